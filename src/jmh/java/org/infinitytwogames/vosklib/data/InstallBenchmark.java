@@ -0,0 +1,135 @@
+package org.infinitytwogames.vosklib.data;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Installing a model from a local HTTP server: downloading the zip over one connection or in segments and
+ * then extracting it, against {@link DataLoader#install} extracting it while it downloads. The server can
+ * throttle each connection to a bandwidth, like a far-away host where a single connection can't fill the link.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InstallBenchmark {
+    @Param("32")
+    public int megabytes;
+    
+    // Per connection; 0 serves as fast as the loopback allows
+    @Param({"0", "200"})
+    public int megabitsPerSecond;
+    
+    @Param("4")
+    public int segments;
+    
+    private HttpServer server;
+    private ExecutorService handlers;
+    private String url;
+    private Path zip;
+    private Path directory;
+    
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        Path template = Files.createTempFile("vosklib-bench", ".zip");
+        UnzipBenchmark.writeModelZip(template, megabytes);
+        byte[] body = Files.readAllBytes(template);
+        Files.delete(template);
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/model.zip", exchange -> {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            
+            int from = 0;
+            int to = body.length - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                from = Integer.parseInt(bounds[0]);
+                to = Integer.parseInt(bounds[1]);
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + body.length);
+            }
+            
+            exchange.sendResponseHeaders(range != null ? 206 : 200, to - from + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                serve(out, body, from, to - from + 1);
+            }
+        });
+        handlers = Executors.newCachedThreadPool(); // One thread per segment, or they'd be served one after another
+        server.setExecutor(handlers);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/model.zip";
+    }
+    
+    private void serve(OutputStream out, byte[] body, int from, int count) throws IOException {
+        if (megabitsPerSecond <= 0) {
+            out.write(body, from, count);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        double nanosPerByte = 8_000.0 / megabitsPerSecond;
+        for (int offset = 0; offset < count; offset += 64 * 1024) {
+            int length = Math.min(64 * 1024, count - offset);
+            out.write(body, from + offset, length);
+            
+            long due = start + (long) ((offset + length) * nanosPerByte);
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+    }
+    
+    @Setup(Level.Invocation)
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("vosklib-bench");
+        zip = directory.resolve("model.zip");
+    }
+    
+    @Benchmark
+    public void downloadThenUnzip() throws IOException {
+        FileDownloader.downloadFileSync(url, zip);
+        DataLoader.unzip(zip.toFile(), directory.resolve("model").toFile());
+    }
+    
+    @Benchmark
+    public void segmentedDownloadThenUnzip() throws Exception {
+        FileDownloader.setSegments(segments);
+        FileDownloader.DownloadTask task = FileDownloader.createTask(url, directory, false, null);
+        FileDownloader.processTask(task, null);
+        DataLoader.unzip(task.target().toFile(), directory.resolve("model").toFile());
+    }
+    
+    @Benchmark
+    public void streamingInstall() throws Exception {
+        DataLoader.install(url, directory.resolve("model"));
+    }
+    
+    @TearDown(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        UnzipBenchmark.delete(directory);
+    }
+    
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+}
@@ -0,0 +1,55 @@
+package org.infinitytwogames.vosklib.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the model manifest the way {@code getOnlineModels} does with the cached {@code manifest.json},
+ * on a generated manifest with the same fields and size as the one from alphacephei.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManifestBenchmark {
+    @Param("120")
+    public int models;
+    
+    private String manifest;
+    
+    @Setup
+    public void setUp() {
+        String[] languages = {"en-us", "de", "fr", "es", "ru", "cn", "ja", "pt", "it", "nl"};
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < models; i++) {
+            String lang = languages[i % languages.length];
+            boolean small = i % 3 == 0;
+            
+            JsonObject model = new JsonObject();
+            model.addProperty("lang", lang);
+            model.addProperty("lang_text", lang.toUpperCase() + " language");
+            model.addProperty("md5", "0123456789abcdef0123456789abcdef");
+            model.addProperty("name", "vosk-model-" + (small ? "small-" : "") + lang + "-0." + i);
+            model.addProperty("obsolete", i % 7 == 0 ? "true" : "false");
+            model.addProperty("size", small ? 41205931 : 1834951012L);
+            model.addProperty("size_text", small ? "39.3MiB" : "1.7GiB");
+            model.addProperty("type", small ? "small" : "big");
+            model.addProperty("url", "https://alphacephei.com/vosk/models/vosk-model-" + lang + "-0." + i + ".zip");
+            model.addProperty("version", "0." + i);
+            array.add(model);
+        }
+        manifest = array.toString();
+    }
+    
+    @Benchmark
+    public List<DataLoader.VoskModel> parse() {
+        return DataLoader.getVoskModels(JsonParser.parseString(manifest).getAsJsonArray());
+    }
+}
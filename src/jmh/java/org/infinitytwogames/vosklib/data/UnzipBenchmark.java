@@ -0,0 +1,99 @@
+package org.infinitytwogames.vosklib.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Extracting a downloaded model with {@link DataLoader#unzip}, on a generated zip shaped like a small
+ * Vosk model: one top-level folder, a few large binaries and a handful of small config files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class UnzipBenchmark {
+    @Param("32")
+    public int megabytes;
+    
+    private Path template;
+    private Path zip;
+    private Path destination;
+    
+    @Setup(Level.Trial)
+    public void createZip() throws IOException {
+        template = Files.createTempFile("vosklib-bench", ".zip");
+        writeModelZip(template, megabytes);
+    }
+    
+    static void writeModelZip(Path file, int megabytes) throws IOException {
+        Random random = new Random(42);
+        
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("vosk-model-bench/"));
+            // Model binaries barely compress; random bytes behave the same
+            writeEntry(out, "vosk-model-bench/am/final.mdl", megabytes * 1024 * 1024 / 2, random, false);
+            writeEntry(out, "vosk-model-bench/graph/HCLr.fst", megabytes * 1024 * 1024 / 4, random, false);
+            writeEntry(out, "vosk-model-bench/graph/Gr.fst", megabytes * 1024 * 1024 / 4, random, false);
+            for (String name : new String[]{"conf/mfcc.conf", "conf/model.conf", "graph/phones/word_boundary.int", "README"}) {
+                writeEntry(out, "vosk-model-bench/" + name, 4096, random, true);
+            }
+        }
+    }
+    
+    private static void writeEntry(ZipOutputStream out, String name, int size, Random random, boolean text) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        byte[] block = new byte[64 * 1024];
+        for (int written = 0; written < size; written += block.length) {
+            if (text) {
+                for (int i = 0; i < block.length; i++) block[i] = (byte) ('a' + random.nextInt(8));
+            } else {
+                random.nextBytes(block);
+            }
+            out.write(block, 0, Math.min(block.length, size - written));
+        }
+        out.closeEntry();
+    }
+    
+    // unzip() deletes the archive, so every run gets a fresh copy
+    @Setup(Level.Invocation)
+    public void copyZip() throws IOException {
+        zip = Files.createTempFile("vosklib-bench", ".zip");
+        Files.copy(template, zip, StandardCopyOption.REPLACE_EXISTING);
+        destination = Files.createTempDirectory("vosklib-bench");
+    }
+    
+    @Benchmark
+    public void unzip() throws IOException {
+        DataLoader.unzip(zip.toFile(), destination.toFile());
+    }
+    
+    @TearDown(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        delete(destination);
+        Files.deleteIfExists(zip);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteZip() throws IOException {
+        Files.deleteIfExists(template);
+    }
+    
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+}
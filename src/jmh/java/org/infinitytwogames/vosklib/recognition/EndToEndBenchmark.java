@@ -0,0 +1,86 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.openjdk.jmh.annotations.*;
+import org.vosk.LibVosk;
+import org.vosk.LogLevel;
+import org.vosk.Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PCM in, text out: a whole WAV file through a real model, the way {@link BatchTranscriber} does it.
+ * <p>
+ * Models are too big to ship with the sources, so point {@code model} at an unpacked one (a small
+ * model is enough), for example {@code -Pjmh="EndToEnd -p model=/path/to/vosk-model-small-en-us-0.15"}.
+ * Without a {@code wav}, a generated 10-second 16 kHz clip is used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+    @Param("")
+    public String model;
+    
+    @Param("")
+    public String wav;
+    
+    private Model loaded;
+    private Path fixture;
+    private Path generated;
+    
+    @Setup
+    public void setUp() throws IOException {
+        if (model.isEmpty()) throw new IllegalStateException("Pass the model directory with -p model=<path>");
+        
+        LibVosk.setLogLevel(LogLevel.WARNINGS);
+        loaded = new Model(model);
+        
+        if (wav.isEmpty()) {
+            generated = Files.createTempFile("vosklib-bench", ".wav");
+            Files.write(generated, syntheticWav(16000, 10));
+            fixture = generated;
+        } else {
+            fixture = Path.of(wav);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        if (loaded != null) loaded.close();
+        if (generated != null) Files.deleteIfExists(generated);
+    }
+    
+    @Benchmark
+    public Transcription transcribe() {
+        Transcription transcription = BatchTranscriber.transcribe(loaded, fixture);
+        if (!transcription.isSuccess()) throw new IllegalStateException(transcription.error());
+        return transcription;
+    }
+    
+    // Mono 16-bit PCM: a gliding tone with pauses, roughly the energy profile of speech
+    static byte[] syntheticWav(int sampleRate, int seconds) {
+        int samples = sampleRate * seconds;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(36 + samples * 2).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+        buffer.put("data".getBytes()).putInt(samples * 2);
+        
+        double phase = 0;
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / sampleRate;
+            boolean voiced = (t % 2.0) < 1.4;
+            phase += 2 * Math.PI * (180 + 60 * Math.sin(t * 3)) / sampleRate;
+            buffer.putShort((short) (voiced ? 8000 * Math.sin(phase) : 0));
+        }
+        return buffer.array();
+    }
+}
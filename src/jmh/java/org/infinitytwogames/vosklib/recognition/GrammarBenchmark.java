@@ -0,0 +1,32 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the grammar JSON (and recognizer cache key) that {@code createRecognition(String[])} does on every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarBenchmark {
+    @Param({"10", "100", "1000"})
+    public int words;
+    
+    private String[] grammar;
+    
+    @Setup
+    public void setUp() {
+        grammar = new String[words];
+        for (int i = 0; i < words; i++) grammar[i] = (i % 2 == 0 ? " Spell" : "item ") + i;
+    }
+    
+    @Benchmark
+    public String normalize() {
+        return RecognizerCache.normalize(grammar);
+    }
+}
@@ -0,0 +1,64 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text extraction from the JSON Vosk hands back for every decoded chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultExtractorBenchmark {
+    // As returned by getPartialResult(), getResult() and getResult() with setWords(true)
+    private static final String PARTIAL = "{\n  \"partial\" : \"open the inventory and craft a\"\n}";
+    private static final String FINAL = "{\n  \"text\" : \"open the inventory and craft a wooden pickaxe\"\n}";
+    private static final String FINAL_WITH_WORDS = """
+            {
+              "result" : [{
+                  "conf" : 1.000000,
+                  "end" : 0.450000,
+                  "start" : 0.210000,
+                  "word" : "open"
+                }, {
+                  "conf" : 0.982144,
+                  "end" : 0.570000,
+                  "start" : 0.450000,
+                  "word" : "the"
+                }, {
+                  "conf" : 0.941270,
+                  "end" : 1.140000,
+                  "start" : 0.570000,
+                  "word" : "inventory"
+                }],
+              "text" : "open the inventory"
+            }""";
+    
+    private final VoskResult partial = new VoskResult(VoskResult.Kind.PARTIAL);
+    private final VoskResult text = new VoskResult(VoskResult.Kind.FINAL);
+    
+    @Benchmark
+    public boolean partial() {
+        return ResultExtractor.extract(PARTIAL, partial);
+    }
+    
+    @Benchmark
+    public boolean finalResult() {
+        return ResultExtractor.extract(FINAL, text);
+    }
+    
+    @Benchmark
+    public boolean finalWithWords() {
+        return ResultExtractor.extract(FINAL_WITH_WORDS, text);
+    }
+    
+    @Benchmark
+    public void parseWordDetails(Blackhole blackhole) {
+        blackhole.consume(RecognitionResult.parse(FINAL_WITH_WORDS, "open the inventory"));
+    }
+}
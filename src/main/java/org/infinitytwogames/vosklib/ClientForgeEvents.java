@@ -12,21 +12,31 @@ import org.infinitytwogames.vosklib.data.Config;
 import org.infinitytwogames.vosklib.events.VoskChangeRecognitionState;
 import org.infinitytwogames.vosklib.events.VoskVoiceEvent;
 
+import java.util.List;
+
 @Mod.EventBusSubscriber(modid = "vosklib", bus = Mod.EventBusSubscriber.Bus.FORGE, value = Dist.CLIENT)
 public class ClientForgeEvents {
     public static String transcription = "";
     public static Interval timer = new Interval(5000, () -> transcription = "");
     
+    // The metrics overlay is refreshed a few times a second rather than formatted every frame
+    private static final long METRICS_REFRESH_NANOS = 250_000_000L;
+    private static List<String> metricsLines = List.of();
+    private static long metricsRefreshedAt = 0;
+    
     @SubscribeEvent
     public static void onKeyInput(TickEvent.ClientTickEvent event) {
         if (event.phase == TickEvent.Phase.END) { // Only check once per tick
             while (KeyInputHandler.toggleVoskKey.consumeClick()) {
-                if (VoskManager.getRecognizer() == null) VoskManager.createRecognition();
+                // While the model loads, keep whatever grammar a mod may have requested
+                if (VoskManager.getRecognizer() == null && VoskManager.getModelState() != VoskManager.ModelState.LOADING)
+                    VoskManager.createRecognition();
                 
                 var player = Minecraft.getInstance().player;
                 if (player == null) return;
                 
-                if (!VoskManager.isListening()) {
+                // A press while the model is still loading counts as "start" and can be undone by another one
+                if (!VoskManager.isListening() && !VoskManager.isStartPending()) {
                     VoskManager.startListening();
                     
                     Minecraft.getInstance().player.displayClientMessage(
@@ -43,6 +53,12 @@ public class ClientForgeEvents {
         }
     }
     
+    @SubscribeEvent
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        // Results are queued by the decode threads; partials are coalesced to at most one per tick
+        if (event.phase == TickEvent.Phase.END) VoskManager.deliverPending();
+    }
+    
     @SubscribeEvent
     public static void onResult(VoskVoiceEvent.Result result) {
         transcription = result.getText();
@@ -78,5 +94,23 @@ public class ClientForgeEvents {
                     mc.font.lineHeight + 8
             );
         }
+        
+        if (Config.SHOW_METRICS.get()) renderMetrics(event.getGuiGraphics(), mc);
+    }
+    
+    private static void renderMetrics(GuiGraphics graphics, Minecraft mc) {
+        long now = System.nanoTime();
+        if (now - metricsRefreshedAt > METRICS_REFRESH_NANOS) {
+            metricsLines = VoskManager.getMetrics().describe();
+            metricsRefreshedAt = now;
+        }
+        
+        // Below the transcript tooltip
+        int y = mc.font.lineHeight * 3 + 8;
+        for (String line : metricsLines) {
+            graphics.fill(2, y - 1, 6 + mc.font.width(line), y + mc.font.lineHeight, 0x90000000);
+            graphics.drawString(mc.font, line, 4, y, 0xFFFFFF);
+            y += mc.font.lineHeight + 1;
+        }
     }
 }
@@ -0,0 +1,35 @@
+package org.infinitytwogames.vosklib;
+
+import java.nio.file.Path;
+
+/**
+ * How a {@link VoskManager#replay replayed} session went.
+ *
+ * @param audioNanos  Duration of the replayed audio, including the silence appended at the end.
+ * @param wallNanos   Time from opening the file until it ran out.
+ * @param maxLagNanos How far a real-time replay fell behind its schedule; 0 if it kept up.
+ * @param metrics     The recognition metrics collected during the replay.
+ */
+public record ReplayReport(Path file, long audioNanos, long wallNanos, long maxLagNanos, VoskMetrics metrics) {
+    /**
+     * @return Audio seconds processed per wall-clock second; about 1 for real-time replays.
+     */
+    public double speed() {
+        return wallNanos == 0 ? 0 : (double) audioNanos / wallNanos;
+    }
+    
+    /**
+     * @return Final results delivered during the replay.
+     */
+    public long results() {
+        return metrics.eventLatency().count();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s: %.1f s of audio in %.1f s (%.1fx), %d results, capture to event p50 %.0f ms, p95 %.0f ms, RTF %.2f, lag %.0f ms",
+                file.getFileName(), audioNanos / 1e9, wallNanos / 1e9, speed(), results(),
+                metrics.eventLatency().percentileMillis(0.5), metrics.eventLatency().percentileMillis(0.95),
+                metrics.realTimeFactor(), maxLagNanos / 1e6);
+    }
+}
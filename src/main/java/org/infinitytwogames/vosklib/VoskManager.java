@@ -1,102 +1,415 @@
 package org.infinitytwogames.vosklib;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonPrimitive;
 import com.mojang.logging.LogUtils;
 import net.minecraft.client.Minecraft;
 import net.minecraftforge.common.MinecraftForge;
+import org.infinitytwogames.vosklib.audio.AudioPipeline;
+import org.infinitytwogames.vosklib.audio.AudioSource;
+import org.infinitytwogames.vosklib.audio.CaptureMode;
+import org.infinitytwogames.vosklib.audio.LatencyHistogram;
+import org.infinitytwogames.vosklib.audio.LatencyTracker;
+import org.infinitytwogames.vosklib.audio.MicrophoneSource;
+import org.infinitytwogames.vosklib.audio.PcmRingBuffer;
+import org.infinitytwogames.vosklib.audio.RecordingSource;
+import org.infinitytwogames.vosklib.audio.ReplaySource;
+import org.infinitytwogames.vosklib.audio.Resampler;
+import org.infinitytwogames.vosklib.commands.VoiceCommands;
+import org.infinitytwogames.vosklib.data.Config;
 import org.infinitytwogames.vosklib.data.DataLoader;
 import org.infinitytwogames.vosklib.events.VoskVoiceEvent;
+import org.infinitytwogames.vosklib.recognition.BatchTranscriber;
+import org.infinitytwogames.vosklib.recognition.MainThreadHandoff;
+import org.infinitytwogames.vosklib.recognition.RecognitionChannel;
+import org.infinitytwogames.vosklib.recognition.RecognitionListener;
+import org.infinitytwogames.vosklib.recognition.RecognitionListeners;
+import org.infinitytwogames.vosklib.recognition.RecognitionResult;
+import org.infinitytwogames.vosklib.recognition.RecognizerCache;
+import org.infinitytwogames.vosklib.recognition.RecognizerWarmUp;
+import org.infinitytwogames.vosklib.recognition.Transcription;
 import org.slf4j.Logger;
 import org.vosk.Model;
 import org.vosk.Recognizer;
 
 import javax.sound.sampled.*;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 public class VoskManager {
-    private static Model vModel;
-    private static boolean isListening = false;
-    private static Recognizer recognizer;
+    private static volatile Model vModel;
+    private static volatile boolean isListening = false;
+    
+    private static final int SAMPLE_RATE = 16000;
+    
+    // Idle recognizers for recently used grammars, so switching back to one doesn't rebuild it
+    private static final RecognizerCache recognizerCache = new RecognizerCache(SAMPLE_RATE, 4, 64L * 1024 * 1024);
+    
+    // Final results waiting for the client thread; bounded, so a frozen game can't pile them up
+    private static final MainThreadHandoff handoff = new MainThreadHandoff(64);
+    
+    // Capture of an utterance's last audio to its result event
+    private static final LatencyHistogram eventLatency = new LatencyHistogram();
+    
+    // Direct listeners, called before (or instead of) the Forge events
+    private static final RecognitionListeners listeners = new RecognitionListeners();
+    
+    // Every channel decodes the same captured audio; the default one is driven by createRecognition()
+    private static final RecognitionChannel defaultChannel = new RecognitionChannel(RecognitionChannel.DEFAULT_ID, SAMPLE_RATE, recognizerCache, listeners, VoskManager::onFinalResult);
+    private static final Map<String, RecognitionChannel> channels = new ConcurrentHashMap<>(Map.of(RecognitionChannel.DEFAULT_ID, defaultChannel));
+    
+    private static volatile RecognizerWarmUp.Report lastWarmUp;
+    
+    // Set by mods that need word timings, independently of the player's config
+    private static volatile boolean wordDetailsRequested = false;
+    
+    // Model loading happens off the main thread; large models take seconds. Recognizers are built and warmed up here too
+    private static final ExecutorService modelLoader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "VoskLib-ModelLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile CompletableFuture<Model> modelFuture = CompletableFuture.completedFuture(null);
+    private static volatile ModelState modelState = ModelState.UNLOADED;
+    
+    // Batch transcription holds the read lock per file, so the model can't be closed under a running file
+    private static final ReadWriteLock MODEL_LOCK = new ReentrantReadWriteLock();
+    private static final int BATCH_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final ExecutorService batchPool = Executors.newFixedThreadPool(BATCH_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "VoskLib-Batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY); // Never compete with the live pipeline or the game
+            return thread;
+        }
+    });
+    
+    // Requests made while the model was loading
+    private static volatile String deferredKey;
+    private static volatile boolean startWhenReady = false;
     
     private static final Logger logger = LogUtils.getLogger();
     
-    public static void init() {
+    /**
+     * Starts loading the selected model in the background. Until it completes, {@link #getModelState()}
+     * is {@link ModelState#LOADING}, and requests to listen or change grammar are deferred rather than refused.
+     *
+     * @return A future that completes with the loaded model.
+     */
+    public static CompletableFuture<Model> init() {
         Path path = DataLoader.getSelectedPath();
         
         if (path == null || !path.toFile().exists()) {
             logger.warn("VoskLib: Cannot initialize! No model selected or folder missing.");
-            return;
+            return modelFuture;
         }
         
+        modelState = ModelState.LOADING;
+        modelFuture = CompletableFuture.supplyAsync(() -> loadModel(path), modelLoader);
+        return modelFuture;
+    }
+    
+    // Runs on the model loader thread
+    private static Model loadModel(Path path) {
         try {
             logger.info("VoskLib: Loading model from {}", path.toAbsolutePath());
-            vModel = new Model(path.toAbsolutePath().toString());
-            logger.info("VoskLib: Vosk initialized successfully!");
+            long start = System.nanoTime();
+            
+            Model loaded = new Model(path.toAbsolutePath().toString());
+            replaceModel(loaded);
+            logger.info("VoskLib: Vosk initialized successfully in {} ms!", (System.nanoTime() - start) / 1_000_000);
+            
+            modelState = ModelState.READY;
+            onModelReady();
+            return loaded;
             
         } catch (Exception e) {
-            logger.error("VoskLib: Failed to initialize Vosk!");
-            Vosklib.showToast("VOSK", "Failed to initialize VOSK.");
-            e.printStackTrace();
+            modelState = vModel != null ? ModelState.READY : ModelState.FAILED;
+            startWhenReady = false;
+            logger.error("VoskLib: Failed to initialize Vosk!", e);
+            Minecraft.getInstance().execute(() -> Vosklib.showToast("VOSK", "Failed to initialize VOSK."));
+            throw new CompletionException(e);
         }
     }
     
-    public static void terminate() {
-        synchronized (RECOGNIZER_LOCK) {
-            isListening = false;
-            if (recognizer != null) {
-                recognizer.close();
-                recognizer = null;
+    private static void replaceModel(Model loaded) {
+        // Recognizers are bound to the model they were built from, so a running session has to end
+        isListening = false;
+        pipeline.stop();
+        pipeline.join(SHUTDOWN_TIMEOUT_MS);
+        
+        channels.values().forEach(RecognitionChannel::closeRecognizer);
+        recognizerCache.clear();
+        recognizerCache.setLimits(Config.RECOGNIZER_CACHE_SIZE.get(), Config.RECOGNIZER_CACHE_MB.get() * 1024L * 1024L);
+        
+        Model previous = vModel;
+        vModel = loaded;
+        if (previous != null) {
+            // Waits for files that are still being transcribed with the old model
+            MODEL_LOCK.writeLock().lock();
+            try {
+                previous.close();
+            } finally {
+                MODEL_LOCK.writeLock().unlock();
+            }
+        }
+    }
+    
+    // Every newly built recognizer comes through here before a channel installs it
+    private static boolean warmUpIfEnabled(Recognizer recognizer) {
+        if (!Config.WARM_UP.get()) return false;
+        
+        RecognizerWarmUp.Report report = RecognizerWarmUp.run(recognizer);
+        lastWarmUp = report;
+        logger.info("VoskLib: Recognizer warmed up in {} ms.", String.format("%.1f", report.millis()));
+        return true;
+    }
+    
+    // Replays whatever was requested while the model was loading
+    private static void onModelReady() {
+        String key = deferredKey;
+        deferredKey = null;
+        
+        for (RecognitionChannel channel : channels.values()) {
+            String channelKey = channel == defaultChannel && key != null ? key : channel.getRequestedKey();
+            
+            // Nothing asked for yet: have free dictation ready, so the first key press doesn't build it on the client thread
+            if (channelKey == null && channel == defaultChannel) channelKey = RecognizerCache.NO_GRAMMAR;
+            if (channelKey == null) continue;
+            
+            try {
+                // Still on the model loader thread, so the warm-up stays off the main thread
+                channel.switchNow(vModel, channelKey, VoskManager::warmUpIfEnabled);
+            } catch (IOException e) {
+                logger.error("VoskLib: Failed to rebuild recognizer for channel {}", channel.getId(), e);
             }
-            if (vModel != null) {
-                vModel.close(); // Crucial for native memory!
-                vModel = null;
+        }
+        
+        if (startWhenReady) {
+            startWhenReady = false;
+            Minecraft.getInstance().execute(VoskManager::startListening);
+        }
+    }
+    
+    public static ModelState getModelState() {
+        return modelState;
+    }
+    
+    /**
+     * @return The future of the most recent {@link #init()} call. Completes with {@code null} if no model was ever loaded.
+     */
+    public static CompletableFuture<Model> getModelFuture() {
+        return modelFuture;
+    }
+    
+    /**
+     * @return Whether listening was requested while the model was still loading and will start once it's ready.
+     */
+    public static boolean isStartPending() {
+        return startWhenReady;
+    }
+    
+    public static void terminate() {
+        isListening = false;
+        pipeline.stop();
+        
+        // The stages must be gone before their recognizer is freed
+        if (!pipeline.join(SHUTDOWN_TIMEOUT_MS)) {
+            logger.warn("VoskLib: Audio pipeline did not stop within {} ms.", SHUTDOWN_TIMEOUT_MS);
+        }
+        
+        channels.values().forEach(RecognitionChannel::closeRecognizer);
+        recognizerCache.clear();
+        if (vModel != null) {
+            closeModelOnShutdown(vModel);
+            vModel = null;
+        }
+        modelState = ModelState.UNLOADED;
+    }
+    
+    private static void closeModelOnShutdown(Model model) {
+        try {
+            // A batch file still decoding would crash in native code; leaking the model at exit is harmless
+            if (!MODEL_LOCK.writeLock().tryLock(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("VoskLib: Batch transcription still running, not closing the model.");
+                return;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            model.close(); // Crucial for native memory!
+        } finally {
+            MODEL_LOCK.writeLock().unlock();
         }
     }
     
-    private static void safeCloseRecognizer() {
-        if (recognizer != null) {
-            recognizer.close(); // Free native memory before creating a new one
-            recognizer = null;
+    /**
+     * Transcribes recorded WAV or raw 16 kHz PCM files with the loaded model, several at a time on a
+     * bounded background pool. Independent of listening; both can run at once.
+     *
+     * @return A future with one {@link Transcription} per file, in the order given. Files that couldn't be read are reported, not thrown.
+     */
+    public static CompletableFuture<List<Transcription>> transcribeFiles(List<Path> files) {
+        List<CompletableFuture<Transcription>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> transcribeFile(file), batchPool));
         }
+        
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+    
+    // Runs on a batch thread
+    private static Transcription transcribeFile(Path file) {
+        MODEL_LOCK.readLock().lock();
+        try {
+            Model model = vModel;
+            if (model == null) return Transcription.failed(file, 0, "No model is loaded.");
+            
+            Transcription result = BatchTranscriber.transcribe(model, file);
+            if (result.isSuccess()) {
+                logger.info("VoskLib: Transcribed {} ({} ms of audio in {} ms, RTF {}).", file.getFileName(),
+                        (long) result.audioMillis(), (long) result.processingMillis(), String.format("%.2f", result.realTimeFactor()));
+            } else {
+                logger.warn("VoskLib: Failed to transcribe {}: {}", file, result.error());
+            }
+            return result;
+        } finally {
+            MODEL_LOCK.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Switches {@code channel} to the recognizer for {@code key}. It is built and warmed up on the model loader
+     * thread, never the caller's; while listening the decode stage swaps it in at the next utterance boundary,
+     * otherwise it is installed as soon as it is ready.
+     */
+    private static void requestRecognizer(RecognitionChannel channel, String key) {
+        channel.prepare(vModel, key, VoskManager::warmUpIfEnabled, modelLoader);
     }
     
     public static Model getModel() {
         return vModel;
     }
     
-    // Helper to extract values safely
-    private static String getTextFromJson(String json, String key) {
-        try {
-            JsonObject jsonObject = JsonParser.parseString(json).getAsJsonObject();
-            if (jsonObject.has(key)) {
-                return jsonObject.get(key).getAsString();
+    private static final int MAX_CHUNK_SIZE = CaptureMode.chunkBytes(CaptureMode.MAX_CHUNK_MS, SAMPLE_RATE);
+    private static final long SHUTDOWN_TIMEOUT_MS = 2000;
+    
+    // Follows Config.CAPTURE_MODE while listening; the decode stages wait for this many bytes
+    private static volatile CaptureMode captureMode = CaptureMode.BALANCED;
+    private static volatile int chunkSize = CaptureMode.chunkBytes(CaptureMode.BALANCED.getChunkMillis(), SAMPLE_RATE);
+    private static volatile AudioFormat captureFormat;
+    private static final Map<CaptureMode, LatencyTracker> captureLatency = new EnumMap<>(CaptureMode.class);
+    
+    static {
+        for (CaptureMode mode : CaptureMode.values()) captureLatency.put(mode, new LatencyTracker());
+        
+        // Measured on one channel only: the others read the same chunks, and a tracker has a single writer
+        defaultChannel.setPickUpListener(capturedNanos -> captureLatency.get(captureMode).record(System.nanoTime() - capturedNanos));
+    }
+    
+    // Where the capture stage reads from: the microphone unless a mod plugged in something else or a replay is running
+    private static volatile Supplier<AudioSource> audioSourceFactory;
+    private static volatile Path recordingDirectory;
+    private static volatile Replay activeReplay;
+    private static final DateTimeFormatter RECORDING_NAME = DateTimeFormatter.ofPattern("'session-'yyyyMMdd-HHmmss'.wav'");
+    
+    // Enough for the voice activity detector (or the recognizer's own endpointing) to finalize the last utterance
+    private static final int REPLAY_TAIL_MS = 1500;
+    
+    // ~2 seconds of audio between the capture and decode stages
+    private static final PcmRingBuffer audioBuffer = new PcmRingBuffer(1 << 16);
+    private static final AudioPipeline pipeline = new AudioPipeline("VoskLib");
+    
+    // Runs on a decode thread
+    private static void onFinalResult(RecognitionChannel channel, RecognitionResult result) {
+        // Matched here so the main thread only runs the handlers of commands that were said, on the channel they listen to
+        List<VoiceCommands.Match> commands = VoiceCommands.match(result, channel.getId());
+        long capturedNanos = channel.getChunkCaptureNanos();
+        
+        handoff.submit(() -> {
+            channel.resetDeliveredPartial();
+            listeners.fireResult(RecognitionListener.Delivery.MAIN_THREAD, channel.getId(), result);
+            eventLatency.record(System.nanoTime() - capturedNanos);
+            
+            // Cancelling the result also consumes the commands in it
+            if (!MinecraftForge.EVENT_BUS.post(new VoskVoiceEvent.Result(result, channel.getId()))) {
+                VoiceCommands.dispatch(commands);
             }
-        } catch (Exception e) {
-            logger.error("Failed to parse Vosk JSON: {}", json);
+        }, Config.RESULT_OVERFLOW.get(), () -> isListening && channel.isActive());
+    }
+    
+    /**
+     * Delivers the queued final results, then the newest partial result of every channel if it changed.
+     * Called once per client tick.
+     */
+    public static void deliverPending() {
+        // Finals first: a partial still pending now already belongs to the next utterance
+        handoff.drain();
+        
+        for (RecognitionChannel channel : channels.values()) {
+            channel.pollPartial((text, delta) -> {
+                listeners.firePartial(RecognitionListener.Delivery.MAIN_THREAD, channel.getId(), text, delta);
+                MinecraftForge.EVENT_BUS.post(new VoskVoiceEvent.Partial(text, delta, channel.getId()));
+            });
         }
-        return "";
     }
     
-    private static final Object RECOGNIZER_LOCK = new Object();
+    /**
+     * Registers a listener that is called directly instead of through the Forge event bus. Cheaper than
+     * subscribing to {@link VoskVoiceEvent}, and with {@link RecognitionListener.Delivery#DECODE_THREAD}
+     * it sees partials as soon as they are decoded instead of on the next tick.
+     */
+    public static void addListener(RecognitionListener listener, RecognitionListener.Delivery delivery) {
+        listeners.add(listener, delivery);
+    }
     
-    public static void startListening() {
-        startListening(s -> MinecraftForge.EVENT_BUS.post(new VoskVoiceEvent.Partial(s)), s -> MinecraftForge.EVENT_BUS.post(new VoskVoiceEvent.Result(s)));
+    public static boolean removeListener(RecognitionListener listener) {
+        return listeners.remove(listener);
     }
     
-    private static void startListening(Consumer<String> partial, Consumer<String> sentence) {
+    public static void startListening() {
         if (isListening) return;
+        if (modelState == ModelState.LOADING) {
+            startWhenReady = true;
+            Vosklib.showToast("VoskLib", "The model is still loading. VoskLib will start listening once it's ready.");
+            return;
+        }
         if (vModel == null) {
             Vosklib.showToast("VoskLib", "The model is not selected. Please open VoskLib configuration screen.");
             return;
         }
-        if (recognizer == null) {
+        
+        // The previous session may still be winding down (capture exits after its current read)
+        if (!pipeline.join(SHUTDOWN_TIMEOUT_MS)) {
+            logger.warn("VoskLib: Previous audio session is still running.");
+            return;
+        }
+        if (defaultChannel.getRecognizer() == null) {
             if (!createRecognition()) return;
         }
         
@@ -104,78 +417,221 @@ public class VoskManager {
         logger.info("Vosk is now listening...");
         Vosklib.showToast("VoskLib", "VoskLib is now listening...");
         
-        AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
-        DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
+        // One decode stage per channel, each on its own thread and reading the shared buffer through its own cursor
+        for (RecognitionChannel channel : channels.values()) {
+            startDecodeStage(channel);
+        }
         
-        CompletableFuture.runAsync(() -> {
-            try (TargetDataLine line = (TargetDataLine) AudioSystem.getLine(info)) {
-                line.open(format);
-                line.start();
+        // Capture stage: only moves bytes from the source into the ring buffer, never touches a recognizer
+        Replay replay = activeReplay;
+        pipeline.startStage("Capture", Thread.MAX_PRIORITY, () -> {
+            Throwable failure = null;
+            try (AudioSource source = createSource(replay)) {
+                AudioFormat format = source.open();
+                captureFormat = format;
+                boolean live = source.isLive();
+                int inRate = (int) format.getSampleRate();
+                int frameSize = format.getFrameSize();
                 
-                byte[] buffer = new byte[4096];
-                while (isListening) {
-                    int nbytes = line.read(buffer, 0, buffer.length);
-                    if (!isListening || nbytes <= 0) continue;
+                // Sized once for the largest chunk, so the loop itself never allocates
+                int maxFrames = nativeFrames(MAX_CHUNK_SIZE, inRate);
+                Resampler resampler = new Resampler(inRate, SAMPLE_RATE, format.getChannels(), format.isBigEndian(), maxFrames);
+                byte[] buffer = new byte[maxFrames * frameSize];
+                byte[] resampled = resampler.isPassthrough() ? buffer : new byte[resampler.maxOutputBytes(buffer.length)];
+                
+                while (isListening && !Thread.currentThread().isInterrupted()) {
+                    // Picked up on every chunk, so a mode change applies without restarting
+                    applyCaptureSettings();
+                    
+                    int nbytes = source.read(buffer, 0, nativeFrames(chunkSize, inRate) * frameSize);
+                    if (nbytes < 0) break; // The source ran out
+                    if (!isListening || nbytes == 0) continue;
                     
-                    // LOCK: Ensure the recognizer isn't swapped during this call
-                    synchronized (RECOGNIZER_LOCK) {
-                        if (recognizer == null) continue;
-                        
-                        if (recognizer.acceptWaveForm(buffer, nbytes)) {
-                            String result = getTextFromJson(recognizer.getResult(), "text");
-                            if (!result.isEmpty()) {
-                                Minecraft.getInstance().execute(() -> sentence.accept(result));
-                            }
-                        } else {
-                            String partialText = getTextFromJson(recognizer.getPartialResult(), "partial");
-                            if (!partialText.isEmpty()) {
-                                Minecraft.getInstance().execute(() -> partial.accept(partialText));
-                            }
-                        }
+                    // Stamped so the default decode stage can tell how long the chunk took to reach it
+                    long readAt = System.nanoTime();
+                    
+                    if (!resampler.isPassthrough()) nbytes = resampler.process(buffer, 0, nbytes, resampled, 0);
+                    
+                    // Recorded audio can wait for the decoders instead of being dropped
+                    while (!live && audioBuffer.free() < nbytes && isListening) LockSupport.parkNanos(1_000_000L);
+                    
+                    if (!audioBuffer.write(resampled, 0, nbytes, readAt)) {
+                        logger.debug("VoskLib: Decoder is falling behind, dropped {} bytes of audio.", nbytes);
                     }
                 }
-                line.stop();
+                
+                if (replay != null) awaitDecoders();
             } catch (LineUnavailableException e) {
+                failure = e;
                 Vosklib.showToast("VoskLib", "Microphone unavailable! Check your privacy settings.");
                 logger.error("Microphone unavailable: ", e);
+            } catch (IOException e) {
+                failure = e;
+                logger.error("VoskLib: Failed to read audio.", e);
             } finally {
                 isListening = false;
+                if (replay != null) finishReplay(replay, failure);
             }
         });
     }
     
+    private static AudioSource createSource(Replay replay) {
+        if (replay != null) return replay.source();
+        
+        Supplier<AudioSource> factory = audioSourceFactory;
+        AudioSource source = factory != null ? factory.get() : new MicrophoneSource(SAMPLE_RATE, Config.NATIVE_CAPTURE.get());
+        
+        Path directory = recordingDirectory;
+        return directory != null ? new RecordingSource(source, directory.resolve(LocalDateTime.now().format(RECORDING_NAME))) : source;
+    }
+    
+    // Lets the decode stages finish what was captured before the session ends
+    private static void awaitDecoders() {
+        while (isListening && !Thread.currentThread().isInterrupted()) {
+            boolean idle = true;
+            for (RecognitionChannel channel : channels.values()) idle &= channel.isIdle(chunkSize);
+            if (idle) return;
+            LockSupport.parkNanos(5_000_000L);
+        }
+    }
+    
+    /**
+     * Replaces the microphone with another source from the next {@link #startListening()} on. {@code null} restores the microphone.
+     */
+    public static void setAudioSource(Supplier<AudioSource> factory) {
+        audioSourceFactory = factory;
+    }
+    
+    /**
+     * Saves the captured audio of every following session as a WAV file in {@code directory}, for
+     * {@link #replay replaying} later. {@code null} stops recording new sessions.
+     */
+    public static void setRecordingDirectory(Path directory) {
+        recordingDirectory = directory;
+    }
+    
+    /**
+     * Runs a recorded session through the whole pipeline in place of the microphone, as if it were being spoken now.
+     * Results and events are delivered as usual. The metrics are reset first, so the report covers the replay alone.
+     *
+     * @return Completes once the file has been decoded and every result of it delivered.
+     */
+    public static CompletableFuture<ReplayReport> replay(Path file, ReplaySource.Pacing pacing) {
+        if (isListening || activeReplay != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Stop listening before starting a replay."));
+        }
+        if (vModel == null || modelState != ModelState.READY) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No model is loaded."));
+        }
+        
+        Replay replay = new Replay(new ReplaySource(file, pacing, REPLAY_TAIL_MS), new CompletableFuture<>());
+        resetMetrics();
+        activeReplay = replay;
+        startListening();
+        
+        if (!isListening) {
+            activeReplay = null;
+            replay.done().completeExceptionally(new IllegalStateException("Listening could not be started."));
+        }
+        return replay.done();
+    }
+    
+    // Runs on the capture stage once the replay is over
+    private static void finishReplay(Replay replay, Throwable failure) {
+        activeReplay = null;
+        if (failure != null) {
+            replay.done().completeExceptionally(failure);
+            return;
+        }
+        
+        // Behind the replay's own results in the queue, so the report counts all of them
+        ReplaySource source = replay.source();
+        handoff.submit(() -> replay.done().complete(new ReplayReport(source.getFile(), source.getAudioNanos(),
+                source.getElapsedNanos(), source.getMaxLagNanos(), getMetrics())), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+    }
+    
+    // Input frames to read for a chunk of chunkBytes at 16 kHz, plus one sample so the resampled chunk is never short
+    private static int nativeFrames(int chunkBytes, int inRate) {
+        return (int) (((long) chunkBytes / 2 + 1) * inRate + SAMPLE_RATE - 1) / SAMPLE_RATE;
+    }
+    
+    private static void startDecodeStage(RecognitionChannel channel) {
+        configureVad(channel);
+        channel.setWordDetails(isWordDetails());
+        channel.beginSession();
+        
+        PcmRingBuffer.Cursor cursor = audioBuffer.openCursor();
+        pipeline.startStage("Decode-" + channel.getId(), Thread.MAX_PRIORITY - 1,
+                () -> channel.decodeLoop(cursor, () -> chunkSize, MAX_CHUNK_SIZE, () -> isListening));
+    }
+    
+    // Runs on the capture stage
+    private static CaptureMode applyCaptureSettings() {
+        CaptureMode mode = Config.CAPTURE_MODE.get();
+        int millis = Config.CAPTURE_CHUNK_MS.get();
+        int size = CaptureMode.chunkBytes(millis > 0 ? millis : mode.getChunkMillis(), SAMPLE_RATE);
+        
+        if (mode != captureMode || size != chunkSize) {
+            captureMode = mode;
+            chunkSize = size;
+            logger.info("VoskLib: Capture mode is now {} ({} byte chunks).", mode, size);
+        }
+        return mode;
+    }
+    
+    /**
+     * Changes the capture mode and saves it. Takes effect on the next chunk, even while listening.
+     */
+    public static void setCaptureMode(CaptureMode mode) {
+        Config.CAPTURE_MODE.set(mode);
+        DataLoader.save();
+    }
+    
+    /**
+     * @return The format the microphone was opened in, before resampling, or {@code null} if it never was.
+     */
+    public static AudioFormat getCaptureFormat() {
+        return captureFormat;
+    }
+    
+    public static CaptureMode getCaptureMode() {
+        return captureMode;
+    }
+    
+    /**
+     * @return How long captured chunks took in {@code mode} from the microphone read returning to the default
+     * channel's decode stage starting on them: resampling, the hand-over and any backlog ahead of them.
+     */
+    public static LatencyTracker getCaptureLatency(CaptureMode mode) {
+        return captureLatency.get(mode);
+    }
+    
+    private static void configureVad(RecognitionChannel channel) {
+        channel.getVoiceActivityDetector().configure(
+                Config.VAD_ENABLED.get(),
+                Config.VAD_ENERGY_THRESHOLD.get(),
+                Config.VAD_ZCR_THRESHOLD.get(),
+                Config.VAD_HANGOVER_MS.get(),
+                Config.VAD_PREROLL_MS.get()
+        );
+    }
+    
     public static boolean createRecognition(String[] grammar) {
-        synchronized (RECOGNIZER_LOCK) {
-            if (vModel == null) {
-                logger.error("Cannot create grammar recognizer because model is not selected or deleted from memory");
-                Vosklib.showToast("VoskLib", "The model is not selected.");
-                return false;
-            }
-            
-            // 1. Clean up old native resources!
-            safeCloseRecognizer();
-            
-            if (grammar == null || grammar.length == 0) {
-                return createRecognition();
-            }
-            
-            // 2. Build the grammar
-            JsonArray array = new JsonArray();
-            for (String s : grammar) {
-                if (s != null && !s.trim().isEmpty()) {
-                    array.add(s.trim().toLowerCase());
-                }
-            }
-            
-            if (!array.contains(new JsonPrimitive("[unk]"))) {
-                array.add("[unk]");
-            }
-            
-            // 3. Assign the new recognizer
-            recognizer = new Recognizer(getModel(), 16000f, array.toString());
-            logger.info("Vosk grammar updated successfully.");
+        if (modelState == ModelState.LOADING) {
+            deferredKey = RecognizerCache.normalize(grammar);
             return true;
         }
+        if (vModel == null) {
+            logger.error("Cannot create grammar recognizer because model is not selected or deleted from memory");
+            Vosklib.showToast("VoskLib", "The model is not selected.");
+            return false;
+        }
+        
+        // Order, case and duplicates don't matter, so equivalent grammars share a recognizer
+        requestRecognizer(defaultChannel, RecognizerCache.normalize(grammar));
+        
+        logger.info("Vosk grammar update requested.");
+        return true;
     }
     
     public static boolean isListening() {
@@ -184,35 +640,270 @@ public class VoskManager {
     
     public static void stopListening() {
         isListening = false;
+        startWhenReady = false;
+        pipeline.stop();
         Vosklib.showToast("VoskLib", "VoskLib has stopped listening.");
     }
     
     public static boolean createRecognition() {
-        synchronized (RECOGNIZER_LOCK) {
-            try {
-                if (vModel == null) {
-                    logger.error("Cannot create recognizer because model is not selected or deleted from memory");
-                    Vosklib.showToast("VoskLib", "The model is not selected.");
-                    return false;
-                }
-                
-                safeCloseRecognizer();
-                recognizer = new Recognizer(getModel(), 16000f);
-                
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+        if (modelState == ModelState.LOADING) {
+            deferredKey = RecognizerCache.NO_GRAMMAR;
+            return true;
+        }
+        if (vModel == null) {
+            logger.error("Cannot create recognizer because model is not selected or deleted from memory");
+            Vosklib.showToast("VoskLib", "The model is not selected.");
+            return false;
+        }
+        requestRecognizer(defaultChannel, RecognizerCache.NO_GRAMMAR);
+        return true;
+    }
+    
+    /**
+     * Adds (or re-targets) an extra recognizer that decodes the same audio in parallel with the default one,
+     * for example free dictation next to a command grammar. Its events carry {@code id} as their channel.
+     * Voice commands only fire on it if they were registered for {@code id}.
+     *
+     * @param grammar The words to recognize, or {@code null} for free dictation.
+     */
+    public static boolean addRecognitionChannel(String id, String[] grammar) {
+        String key = RecognizerCache.normalize(grammar);
+        RecognitionChannel existing = channels.get(id);
+        boolean added = existing == null;
+        RecognitionChannel channel = added ? new RecognitionChannel(id, SAMPLE_RATE, recognizerCache, listeners, VoskManager::onFinalResult) : existing;
+        
+        // No model yet: onModelReady() builds it
+        if (vModel == null || modelState == ModelState.LOADING) {
+            channel.setRequestedKey(key);
+            channels.put(id, channel);
+            return true;
+        }
+        
+        requestRecognizer(channel, key);
+        if (added) {
+            channels.put(id, channel);
+            if (isListening) startDecodeStage(channel);
         }
         return true;
     }
     
+    /**
+     * Stops and removes an extra channel. The default channel can't be removed.
+     */
+    public static void removeRecognitionChannel(String id) {
+        if (RecognitionChannel.DEFAULT_ID.equals(id)) return;
+        
+        RecognitionChannel channel = channels.remove(id);
+        if (channel != null) channel.remove();
+    }
+    
+    /**
+     * Asks for per-word timings and confidences in {@link VoskVoiceEvent.Result#getDetails()}. They cost a little
+     * decode time, so they are off unless a mod asks for them or the player turns on {@code word_details}.
+     * Applies from the next utterance.
+     */
+    public static void setWordDetails(boolean enabled) {
+        wordDetailsRequested = enabled;
+        boolean effective = isWordDetails();
+        channels.values().forEach(channel -> channel.setWordDetails(effective));
+    }
+    
+    public static boolean isWordDetails() {
+        return wordDetailsRequested || Config.WORD_DETAILS.get();
+    }
+    
+    public static Set<String> getRecognitionChannels() {
+        return channels.keySet();
+    }
+    
+    /**
+     * Feeds external audio (e.g. from a voice chat mod) into the same pipeline as the microphone, so every channel
+     * decodes it on its own thread and grammar swaps can't race with it. Like all {@code feedAudio} overloads, this
+     * is safe to call from any thread, expects 16 kHz mono and only queues while listening.
+     */
     public static void feedAudio(byte[] audioData) {
-        if (VoskManager.getRecognizer() != null && VoskManager.isListening()) {
-            VoskManager.getRecognizer().acceptWaveForm(audioData, audioData.length);
+        feedAudio(audioData, 0, audioData.length);
+    }
+    
+    /**
+     * @param data 16-bit little-endian PCM; {@code len} must be a whole number of samples.
+     * @return {@code true} if the audio was queued, {@code false} if not listening or the decoders are behind.
+     */
+    public static boolean feedAudio(byte[] data, int off, int len) {
+        checkWholeSamples(len);
+        return isListening && audioBuffer.write(data, off, len);
+    }
+    
+    /**
+     * Copies straight out of {@code data}, heap or direct, and advances its position if the audio was queued.
+     *
+     * @param data 16-bit little-endian PCM.
+     */
+    public static boolean feedAudio(ByteBuffer data) {
+        checkWholeSamples(data.remaining());
+        return isListening && audioBuffer.write(data);
+    }
+    
+    public static boolean feedAudio(short[] samples, int off, int len) {
+        return isListening && audioBuffer.write(samples, off, len);
+    }
+    
+    public static boolean feedAudio(ShortBuffer samples) {
+        return isListening && audioBuffer.write(samples);
+    }
+    
+    // A stray byte would shift every sample after it
+    private static void checkWholeSamples(int len) {
+        if ((len & 1) != 0) throw new IllegalArgumentException("Audio must be 16-bit samples, got an odd number of bytes: " + len);
+    }
+    
+    /**
+     * @return The number of captured chunks dropped because the decoder could not keep up.
+     */
+    public static long getOverrunCount() {
+        return audioBuffer.getOverruns();
+    }
+    
+    public static long getDroppedAudioBytes() {
+        return audioBuffer.getDroppedBytes();
+    }
+    
+    /**
+     * @return How many final results and partials are waiting for the next client tick.
+     */
+    public static int getHandoffDepth() {
+        int depth = handoff.getDepth();
+        for (RecognitionChannel channel : channels.values()) {
+            if (channel.hasPendingPartial()) depth++;
         }
+        return depth;
+    }
+    
+    /**
+     * @return How many partials were replaced by a newer one before the client thread picked them up.
+     */
+    public static long getDroppedPartialCount() {
+        long dropped = 0;
+        for (RecognitionChannel channel : channels.values()) dropped += channel.getDroppedPartials();
+        return dropped;
+    }
+    
+    /**
+     * Collects the recognition metrics of all channels. Cheap enough to call every frame, but the
+     * numbers only change a few times a second.
+     */
+    public static VoskMetrics getMetrics() {
+        double realTimeFactor = 0;
+        int backlog = 0;
+        LatencyHistogram.Snapshot acceptLatency = LatencyHistogram.Snapshot.EMPTY;
+        for (RecognitionChannel channel : channels.values()) {
+            realTimeFactor = Math.max(realTimeFactor, channel.getRealTimeFactor());
+            backlog = Math.max(backlog, channel.getBacklogBytes());
+            acceptLatency = acceptLatency.plus(channel.getAcceptLatency().snapshot());
+        }
+        
+        return new VoskMetrics(realTimeFactor, acceptLatency, eventLatency.snapshot(),
+                getOverrunCount(), getDroppedAudioBytes(), backlog * 1000 / (SAMPLE_RATE * 2), getHandoffDepth(),
+                getDroppedPartialCount(), getOverflowedResultCount(), recognizerCache.getMisses(), recognizerCache.getHits());
+    }
+    
+    /**
+     * Starts the latency histograms and real-time factors over. Counters keep counting.
+     */
+    public static void resetMetrics() {
+        for (RecognitionChannel channel : channels.values()) channel.resetMetrics();
+        eventLatency.reset();
+    }
+    
+    /**
+     * @return How many final results found the result queue full and waited in its overflow list. None are ever dropped.
+     */
+    public static long getOverflowedResultCount() {
+        return handoff.getOverflowed();
+    }
+    
+    /**
+     * @return How often a decode thread had to wait because the result queue was full.
+     */
+    public static long getHandoffStallCount() {
+        return handoff.getStalls();
+    }
+    
+    /**
+     * @return The number of chunks the voice activity detector kept away from the recognizer.
+     */
+    public static long getSkippedFrameCount() {
+        return defaultChannel.getVoiceActivityDetector().getSkippedFrames();
+    }
+    
+    public static long getDecodedFrameCount() {
+        return defaultChannel.getVoiceActivityDetector().getDecodedFrames();
+    }
+    
+    /**
+     * @return How long the last grammar switch took, from the request until the new recognizer was in use.
+     */
+    public static double getLastSwapLatencyMillis() {
+        return defaultChannel.getLastSwapLatencyMillis();
+    }
+    
+    /**
+     * @return How long the most recent warm-up took, or {@code null} if none ran.
+     */
+    public static RecognizerWarmUp.Report getLastWarmUp() {
+        return lastWarmUp;
+    }
+    
+    /**
+     * @return Milliseconds from the first decoded chunk of the current session to its first result, or -1 if there was none yet.
+     */
+    public static double getFirstResultLatencyMillis() {
+        return defaultChannel.getFirstResultLatencyMillis();
+    }
+    
+    /**
+     * @return Milliseconds the first real chunk of the current session took, from {@code acceptWaveForm} to its result,
+     *         or -1 if nothing was decoded yet.
+     */
+    public static double getFirstChunkLatencyMillis() {
+        return defaultChannel.getFirstChunkLatencyMillis();
+    }
+    
+    /**
+     * How long newly built recognizers took for their first real chunk of audio, over all channels. Comparing
+     * {@code true} with {@code false} shows what the {@code warm_up} setting saves on this machine.
+     *
+     * @param warmedUp Whether to return the recognizers that were warmed up first, or those that weren't.
+     */
+    public static LatencyHistogram.Snapshot getFirstChunkLatency(boolean warmedUp) {
+        LatencyHistogram.Snapshot latency = LatencyHistogram.Snapshot.EMPTY;
+        for (RecognitionChannel channel : channels.values()) {
+            latency = latency.plus(channel.getFirstChunkLatency(warmedUp).snapshot());
+        }
+        return latency;
+    }
+    
+    /**
+     * @return The cache of idle recognizers, for hit/miss statistics.
+     */
+    public static RecognizerCache getRecognizerCache() {
+        return recognizerCache;
     }
     
     protected static Recognizer getRecognizer() {
-        return recognizer;
+        return defaultChannel.getRecognizer();
+    }
+    
+    private record Replay(ReplaySource source, CompletableFuture<ReplayReport> done) {}
+    
+    public enum ModelState {
+        /** No model selected, or it was unloaded. */
+        UNLOADED,
+        /** {@link #init()} is loading a model in the background. */
+        LOADING,
+        /** A model is loaded and usable. */
+        READY,
+        /** The last load failed and there is no model to fall back to. */
+        FAILED
     }
 }
@@ -0,0 +1,39 @@
+package org.infinitytwogames.vosklib;
+
+import org.infinitytwogames.vosklib.audio.LatencyHistogram;
+
+import java.util.List;
+
+/**
+ * How recognition is doing on this machine, as returned by {@link VoskManager#getMetrics()}.
+ *
+ * @param realTimeFactor     Decode time divided by audio duration for the slowest channel; above 1 it falls behind.
+ * @param acceptLatency      How long each {@code acceptWaveForm} call took, over all channels.
+ * @param eventLatency       From the capture of an utterance's last audio to its result event on the client thread.
+ * @param overruns           Captured chunks dropped because a decode thread couldn't keep up.
+ * @param audioBacklogMillis Captured audio the slowest channel hasn't read yet.
+ * @param handoffDepth       Results and partials waiting for the next client tick.
+ * @param droppedPartials    Partials replaced by a newer one before the client thread picked them up.
+ * @param overflowedResults  Final results that found the result queue full and waited behind it. None are dropped.
+ * @param recognizerBuilds   Recognizers built from the model (cache misses).
+ * @param recognizerReuses   Grammar switches served by an already built recognizer.
+ */
+public record VoskMetrics(double realTimeFactor, LatencyHistogram.Snapshot acceptLatency, LatencyHistogram.Snapshot eventLatency,
+                          long overruns, long droppedAudioBytes, int audioBacklogMillis, int handoffDepth,
+                          long droppedPartials, long overflowedResults, long recognizerBuilds, long recognizerReuses) {
+    /**
+     * A few short lines for the debug overlay.
+     */
+    public List<String> describe() {
+        return List.of(
+                String.format("RTF %.2f  backlog %d ms", realTimeFactor, audioBacklogMillis),
+                String.format("acceptWaveForm p50 %.1f / p95 %.1f / max %.1f ms",
+                        acceptLatency.percentileMillis(0.5), acceptLatency.percentileMillis(0.95), acceptLatency.maxMillis()),
+                String.format("capture to event p50 %.0f / p95 %.0f ms (%d)",
+                        eventLatency.percentileMillis(0.5), eventLatency.percentileMillis(0.95), eventLatency.count()),
+                String.format("overruns %d  queue %d  dropped %d partials  overflowed %d results",
+                        overruns, handoffDepth, droppedPartials, overflowedResults),
+                String.format("recognizers built %d, reused %d", recognizerBuilds, recognizerReuses)
+        );
+    }
+}
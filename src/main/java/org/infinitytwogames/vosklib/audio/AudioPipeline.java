@@ -0,0 +1,82 @@
+package org.infinitytwogames.vosklib.audio;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the threads of the audio pipeline (capture, decode, ...).
+ * <p>
+ * Each stage runs on its own named, high-priority daemon thread instead of borrowing a thread from
+ * the common {@link java.util.concurrent.ForkJoinPool} for the whole listening session, so capture
+ * latency doesn't depend on what other mods are doing with the pool and shutdown can wait for the
+ * stages to finish before native resources are freed.
+ */
+public class AudioPipeline {
+    private static final Logger logger = LogUtils.getLogger();
+    
+    private final String name;
+    private final List<Thread> stages = new ArrayList<>();
+    
+    public AudioPipeline(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Starts {@code loop} on a new stage thread. The loop should return once it is interrupted.
+     */
+    public synchronized void startStage(String stageName, int priority, Runnable loop) {
+        Thread thread = new Thread(() -> {
+            try {
+                loop.run();
+            } catch (Throwable t) {
+                logger.error("VoskLib: Audio stage {} crashed.", stageName, t);
+            }
+        }, name + "-" + stageName);
+        
+        thread.setDaemon(true); // Never keep the game alive
+        thread.setPriority(priority);
+        stages.add(thread);
+        thread.start();
+    }
+    
+    /**
+     * Interrupts every stage. Doesn't wait for them; see {@link #join(long)}.
+     */
+    public synchronized void stop() {
+        stages.forEach(Thread::interrupt);
+    }
+    
+    /**
+     * Waits for all stages to finish.
+     *
+     * @return {@code true} if every stage has exited, {@code false} if the timeout elapsed first.
+     */
+    public boolean join(long timeoutMillis) {
+        List<Thread> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(stages);
+        }
+        
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        try {
+            for (Thread thread : snapshot) {
+                long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remaining > 0) thread.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        synchronized (this) {
+            stages.removeIf(thread -> !thread.isAlive());
+            return stages.isEmpty();
+        }
+    }
+    
+    public synchronized boolean isAlive() {
+        return stages.stream().anyMatch(Thread::isAlive);
+    }
+}
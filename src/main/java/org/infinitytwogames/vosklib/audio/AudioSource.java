@@ -0,0 +1,41 @@
+package org.infinitytwogames.vosklib.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.IOException;
+
+/**
+ * Where the capture stage gets its audio: the {@link MicrophoneSource microphone} normally, a
+ * {@link ReplaySource recorded session} for repeatable performance runs, and either of them
+ * wrapped in a {@link RecordingSource} to save what was heard.
+ * <p>
+ * A source is opened, read from one thread until it runs out or listening stops, and closed.
+ * The capture stage converts whatever 16-bit PCM format it delivers to 16 kHz mono.
+ */
+public interface AudioSource extends AutoCloseable {
+    /**
+     * Opens the source and starts delivering audio.
+     *
+     * @return The format {@link #read} delivers; always 16-bit signed PCM.
+     */
+    AudioFormat open() throws IOException, LineUnavailableException;
+    
+    /**
+     * Blocks until audio is available, like {@code TargetDataLine.read}.
+     *
+     * @param len A multiple of the frame size.
+     * @return The number of bytes read, a multiple of the frame size, or -1 once the source has no more audio.
+     */
+    int read(byte[] buffer, int off, int len) throws IOException;
+    
+    /**
+     * @return {@code false} if the audio isn't produced in real time, so the capture stage may wait for the
+     * decoders instead of dropping audio when they fall behind.
+     */
+    default boolean isLive() {
+        return true;
+    }
+    
+    @Override
+    void close();
+}
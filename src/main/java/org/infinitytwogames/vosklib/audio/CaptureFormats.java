@@ -0,0 +1,55 @@
+package org.infinitytwogames.vosklib.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+
+/**
+ * Picks the format to open a microphone line in.
+ * <p>
+ * Many USB and headset mixers only really run at 44.1 or 48 kHz stereo; asking them for 16 kHz mono
+ * either fails or makes Java Sound convert in slow, allocating code. So we open the line at a rate
+ * the device offers natively and let {@link Resampler} produce 16 kHz mono.
+ */
+public class CaptureFormats {
+    // Native rates in order of preference; anything else is ranked by rate
+    private static final float[] PREFERRED_RATES = {48000f, 44100f};
+    private static final float UNSPECIFIED_RATE = 48000f;
+    
+    private CaptureFormats() {}
+    
+    /**
+     * @return The best 16-bit signed PCM format {@code info} supports, or {@code fallback} if it lists none.
+     */
+    public static AudioFormat choose(DataLine.Info info, AudioFormat fallback) {
+        AudioFormat best = null;
+        int bestScore = Integer.MIN_VALUE;
+        
+        for (AudioFormat format : info.getFormats()) {
+            if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) || format.getSampleSizeInBits() != 16) continue;
+            
+            // Mixers often leave the rate or channel count open; fill in something every device can do
+            float rate = format.getSampleRate() == AudioSystem.NOT_SPECIFIED ? UNSPECIFIED_RATE : format.getSampleRate();
+            int channels = format.getChannels() == AudioSystem.NOT_SPECIFIED ? 1 : format.getChannels();
+            if (rate < fallback.getSampleRate() || channels > 2) continue;
+            
+            int score = score(rate, channels, format.isBigEndian());
+            if (score > bestScore) {
+                bestScore = score;
+                best = new AudioFormat(rate, 16, channels, true, format.isBigEndian());
+            }
+        }
+        return best != null ? best : fallback;
+    }
+    
+    private static int score(float rate, int channels, boolean bigEndian) {
+        int score = (int) (rate / 100);
+        for (int i = 0; i < PREFERRED_RATES.length; i++) {
+            if (rate == PREFERRED_RATES[i]) score += 100_000 * (PREFERRED_RATES.length - i);
+        }
+        // Fewer channels means less to read and downmix
+        if (channels == 1) score += 10;
+        if (!bigEndian) score += 1;
+        return score;
+    }
+}
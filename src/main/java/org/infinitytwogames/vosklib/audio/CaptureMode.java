@@ -0,0 +1,47 @@
+package org.infinitytwogames.vosklib.audio;
+
+/**
+ * How much audio the capture stage reads from the microphone at a time.
+ * <p>
+ * Smaller chunks reach the recognizer sooner, so partial results show up faster, but every chunk
+ * costs a native {@code acceptWaveForm} call. Larger chunks mean fewer native calls and less CPU.
+ */
+public enum CaptureMode {
+    /** 32 ms chunks: partial results as soon as possible. */
+    LOW_LATENCY(32, "Low latency"),
+    /** 128 ms chunks, the original behaviour. */
+    BALANCED(128, "Balanced"),
+    /** 256 ms chunks: the fewest native calls, for slow machines. */
+    THROUGHPUT(256, "Throughput");
+    
+    /** The largest chunk any mode (or a custom chunk size) may use. */
+    public static final int MAX_CHUNK_MS = 500;
+    
+    private final int chunkMillis;
+    private final String displayName;
+    
+    CaptureMode(int chunkMillis, String displayName) {
+        this.chunkMillis = chunkMillis;
+        this.displayName = displayName;
+    }
+    
+    public int getChunkMillis() {
+        return chunkMillis;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    public CaptureMode next() {
+        CaptureMode[] modes = values();
+        return modes[(ordinal() + 1) % modes.length];
+    }
+    
+    /**
+     * @return The size in bytes of {@code millis} of 16-bit mono audio at {@code sampleRate}, rounded to whole samples.
+     */
+    public static int chunkBytes(int millis, int sampleRate) {
+        return Math.max(1, sampleRate * millis / 1000) * 2;
+    }
+}
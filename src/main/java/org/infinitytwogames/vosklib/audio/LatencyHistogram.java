@@ -0,0 +1,91 @@
+package org.infinitytwogames.vosklib.audio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency distribution for one hot path, cheap enough to record on every chunk.
+ * <p>
+ * Buckets are logarithmic in microseconds with four steps per power of two, so percentiles are
+ * accurate to within about 20% from a microsecond up to a minute, in a fixed 100 counters. Any
+ * thread may record; {@link #snapshot()} gives a consistent-enough copy to read percentiles from.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 100;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private volatile long maxNanos = 0;
+    
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos) / 1000));
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+    
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        maxNanos = 0;
+    }
+    
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, maxNanos);
+    }
+    
+    static int bucket(long micros) {
+        if (micros < 4) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int step = (int) (micros >>> (exponent - 2)) & 3;
+        return Math.min(BUCKETS - 1, (exponent - 1) * 4 + step);
+    }
+    
+    // Exclusive upper bound of a bucket, in microseconds
+    static long upperBound(int bucket) {
+        if (bucket < 4) return bucket + 1;
+        int exponent = bucket / 4 + 1;
+        long width = 1L << (exponent - 2);
+        return (4 + bucket % 4) * width + width;
+    }
+    
+    /**
+     * The counts of a {@link LatencyHistogram} at one point in time.
+     */
+    public record Snapshot(long[] counts, long maxNanos) {
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKETS], 0);
+        
+        public long count() {
+            long total = 0;
+            for (long c : counts) total += c;
+            return total;
+        }
+        
+        /**
+         * @param quantile Between 0 and 1, for example 0.95.
+         * @return The latency {@code quantile} of the samples stayed under, or 0 without samples.
+         */
+        public double percentileMillis(double quantile) {
+            long total = count();
+            if (total == 0) return 0;
+            
+            long target = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) return Math.min(upperBound(i) * 1000, maxNanos) / 1_000_000.0;
+            }
+            return maxNanos / 1_000_000.0;
+        }
+        
+        public double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+        
+        /**
+         * Combines two snapshots, for example of several channels.
+         */
+        public Snapshot plus(Snapshot other) {
+            long[] sum = counts.clone();
+            for (int i = 0; i < sum.length; i++) sum[i] += other.counts[i];
+            return new Snapshot(sum, Math.max(maxNanos, other.maxNanos));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.infinitytwogames.vosklib.audio;
+
+/**
+ * A running latency average for one hot path. Written by a single thread, read by anyone.
+ * <p>
+ * The average is exponentially weighted so it follows changes (a new capture mode, a busier
+ * machine) within a few seconds instead of being diluted by the whole session.
+ */
+public class LatencyTracker {
+    // Weight of the newest sample
+    private static final double ALPHA = 0.05;
+    
+    private volatile double averageNanos = 0;
+    private volatile long maxNanos = 0;
+    private volatile long samples = 0;
+    
+    public void record(long nanos) {
+        long n = samples;
+        averageNanos = n == 0 ? nanos : averageNanos + ALPHA * (nanos - averageNanos);
+        if (nanos > maxNanos) maxNanos = nanos;
+        samples = n + 1;
+    }
+    
+    public void reset() {
+        averageNanos = 0;
+        maxNanos = 0;
+        samples = 0;
+    }
+    
+    public double getAverageMillis() {
+        return averageNanos / 1_000_000.0;
+    }
+    
+    public double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+    
+    public long getSamples() {
+        return samples;
+    }
+}
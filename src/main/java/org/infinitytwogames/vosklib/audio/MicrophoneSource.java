@@ -0,0 +1,65 @@
+package org.infinitytwogames.vosklib.audio;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import javax.sound.sampled.*;
+
+/**
+ * The default microphone, opened at a rate it supports natively if possible.
+ */
+public class MicrophoneSource implements AudioSource {
+    private static final Logger logger = LogUtils.getLogger();
+    
+    private final AudioFormat fallback;
+    private final boolean nativeCapture;
+    private TargetDataLine line;
+    
+    /**
+     * @param sampleRate    The rate to ask for if the microphone's native formats can't be used.
+     * @param nativeCapture Whether to try the microphone's native format first.
+     */
+    public MicrophoneSource(int sampleRate, boolean nativeCapture) {
+        this.fallback = new AudioFormat(sampleRate, 16, 1, true, false);
+        this.nativeCapture = nativeCapture;
+    }
+    
+    @Override
+    public AudioFormat open() throws LineUnavailableException {
+        line = openLine();
+        line.start();
+        return line.getFormat();
+    }
+    
+    // Opens the microphone at a rate it supports natively; the fallback format only if it offers nothing better
+    private TargetDataLine openLine() throws LineUnavailableException {
+        if (nativeCapture) {
+            TargetDataLine line = (TargetDataLine) AudioSystem.getLine(new Line.Info(TargetDataLine.class));
+            AudioFormat format = line.getLineInfo() instanceof DataLine.Info info ? CaptureFormats.choose(info, fallback) : fallback;
+            try {
+                line.open(format);
+                logger.info("VoskLib: Capturing at {}.", format);
+                return line;
+            } catch (LineUnavailableException | IllegalArgumentException e) {
+                line.close();
+                logger.warn("VoskLib: Microphone refused {}, falling back to {}.", format, fallback, e);
+            }
+        }
+        
+        TargetDataLine line = (TargetDataLine) AudioSystem.getLine(new DataLine.Info(TargetDataLine.class, fallback));
+        line.open(fallback);
+        return line;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int off, int len) {
+        return line.read(buffer, off, len);
+    }
+    
+    @Override
+    public void close() {
+        if (line == null) return;
+        line.stop();
+        line.close();
+    }
+}
@@ -0,0 +1,143 @@
+package org.infinitytwogames.vosklib.audio;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Reads and writes the audio files VoskLib works with: 16-bit PCM WAV, or headerless {@code .pcm}/{@code .raw}
+ * files, which are assumed to be 16 kHz little-endian mono.
+ */
+public class PcmFile {
+    public static final int RAW_SAMPLE_RATE = 16000;
+    
+    // Offsets of the two size fields in the header written by wavHeader()
+    private static final int RIFF_SIZE_OFFSET = 4;
+    private static final int DATA_SIZE_OFFSET = 40;
+    public static final int WAV_HEADER_SIZE = 44;
+    
+    private PcmFile() {}
+    
+    /**
+     * Finds the PCM data in {@code channel}: the {@code data} chunk of a WAV file, or the whole file otherwise.
+     */
+    public static Layout readLayout(FileChannel channel, Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (!name.endsWith(".wav")) {
+            return new Layout(0, channel.size(), RAW_SAMPLE_RATE, 1, false);
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        int riff = header.getInt(0);
+        if ((riff != 0x46464952 && riff != 0x58464952) || header.getInt(8) != 0x45564157) { // "RIFF"/"RIFX", "WAVE"
+            throw new IOException("Not a WAV file: " + file.getFileName());
+        }
+        boolean bigEndian = riff == 0x58464952;
+        
+        int sampleRate = -1;
+        int channels = -1;
+        long position = 12;
+        ByteBuffer chunk = ByteBuffer.allocate(16).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        
+        // Walk the chunks; "fmt " has to come before "data"
+        while (position + 8 <= channel.size()) {
+            chunk.clear().limit(8);
+            readFully(channel, chunk, position);
+            int id = bigEndian ? Integer.reverseBytes(chunk.getInt(0)) : chunk.getInt(0); // Ids are ASCII either way
+            long size = Integer.toUnsignedLong(chunk.getInt(4));
+            
+            if (id == 0x20746D66) { // "fmt "
+                chunk.clear().limit(16);
+                readFully(channel, chunk, position + 8);
+                int format = chunk.getShort(0) & 0xFFFF;
+                channels = chunk.getShort(2);
+                sampleRate = chunk.getInt(4);
+                int bits = chunk.getShort(14);
+                
+                // 1 is plain PCM, 0xFFFE is WAVE_FORMAT_EXTENSIBLE, which recorders use for the same thing
+                if ((format != 1 && format != 0xFFFE) || bits != 16) {
+                    throw new IOException("Only 16-bit PCM WAV files are supported: " + file.getFileName());
+                }
+            } else if (id == 0x61746164) { // "data"
+                if (sampleRate <= 0 || channels <= 0) throw new IOException("WAV file has no format chunk: " + file.getFileName());
+                
+                // Recorders that were killed mid-write leave the size at 0 or too large
+                long length = Math.min(size == 0 ? Long.MAX_VALUE : size, channel.size() - position - 8);
+                return new Layout(position + 8, length, sampleRate, channels, bigEndian);
+            }
+            position += 8 + size + (size & 1); // Chunks are word-aligned
+        }
+        throw new IOException("WAV file has no data chunk: " + file.getFileName());
+    }
+    
+    /**
+     * A canonical 44-byte WAV header for 16-bit PCM in {@code format}: RIFF for little-endian, RIFX for big-endian.
+     *
+     * @param dataLength The number of PCM bytes that follow, or 0 if not known yet (see {@link #finishWav}).
+     */
+    public static ByteBuffer wavHeader(AudioFormat format, long dataLength) {
+        int channels = format.getChannels();
+        int sampleRate = (int) format.getSampleRate();
+        boolean bigEndian = format.isBigEndian();
+        
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        putId(header, bigEndian ? "RIFX" : "RIFF").putInt(riffSize(dataLength));
+        putId(header, "WAVE");
+        putId(header, "fmt ").putInt(16)
+                .putShort((short) 1)
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(sampleRate * channels * 2)
+                .putShort((short) (channels * 2))
+                .putShort((short) 16);
+        putId(header, "data").putInt((int) Math.min(dataLength, 0xFFFFFFFFL));
+        return header.flip();
+    }
+    
+    /**
+     * Fills in the sizes of a header written by {@link #wavHeader} once all {@code dataLength} bytes are written.
+     */
+    public static void finishWav(RandomAccessFile file, boolean bigEndian, long dataLength) throws IOException {
+        ByteBuffer size = ByteBuffer.allocate(4).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        file.seek(RIFF_SIZE_OFFSET);
+        file.write(size.putInt(0, riffSize(dataLength)).array());
+        file.seek(DATA_SIZE_OFFSET);
+        file.write(size.putInt(0, (int) Math.min(dataLength, 0xFFFFFFFFL)).array());
+    }
+    
+    private static int riffSize(long dataLength) {
+        return (int) Math.min(dataLength + WAV_HEADER_SIZE - 8, 0xFFFFFFFFL);
+    }
+    
+    // Chunk ids are ASCII in file order regardless of endianness
+    private static ByteBuffer putId(ByteBuffer buffer, String id) {
+        for (int i = 0; i < 4; i++) buffer.put((byte) id.charAt(i));
+        return buffer;
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) throw new IOException("Unexpected end of file.");
+        }
+    }
+    
+    /**
+     * Where the samples are in a file and how they are laid out.
+     */
+    public record Layout(long offset, long length, int sampleRate, int channels, boolean bigEndian) {
+        public int frameSize() {
+            return channels * 2;
+        }
+        
+        public AudioFormat toAudioFormat() {
+            return new AudioFormat(sampleRate, 16, channels, true, bigEndian);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.infinitytwogames.vosklib.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * A preallocated ring buffer for 16-bit little-endian PCM, read through one or more {@link Cursor}s.
+ * <p>
+ * The capture stage (and anything fed through {@code VoskManager.feedAudio}) writes into it and
+ * every decode stage reads from it with its own cursor, so several recognizers see the same audio
+ * without the stream being copied once per recognizer. Reads are lock-free; writes are serialized
+ * by a lock that is uncontended unless two sources write at once. Writes never block on the
+ * readers: if the slowest cursor has fallen behind and there is not enough room for a whole chunk,
+ * the chunk is dropped and counted as an overrun instead of stalling the microphone.
+ */
+public class PcmRingBuffer {
+    // How many recent chunks remember when they were captured; far more than fit in the buffer at once
+    private static final int STAMPS = 256;
+    
+    private final byte[] buffer;
+    private final int capacity;
+    private final int mask;
+    
+    // Serializes producers; readers never take it
+    private final Object writeLock = new Object();
+    
+    // Total bytes ever written (only changed under writeLock)
+    private volatile long head = 0;
+    
+    // Where each stamped chunk starts in the stream and when it was captured (only changed under writeLock)
+    private final long[] stampStarts = new long[STAMPS];
+    private final long[] stampNanos = new long[STAMPS];
+    private volatile long stamps = 0;
+    
+    // Copy-on-write; only changed when a decode stage starts or stops
+    private volatile Cursor[] cursors = new Cursor[0];
+    
+    private final AtomicLong overruns = new AtomicLong(0);
+    private final AtomicLong droppedBytes = new AtomicLong(0);
+    
+    /**
+     * @param capacity The buffer size in bytes. Rounded up to the next power of two.
+     */
+    public PcmRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        int size = 1;
+        while (size < capacity) size <<= 1;
+        
+        this.capacity = size;
+        this.mask = this.capacity - 1;
+        this.buffer = new byte[this.capacity];
+    }
+    
+    /**
+     * Copies a chunk into the buffer. Safe to call from any thread.
+     *
+     * @return {@code true} if the chunk was queued, {@code false} if it was dropped because the buffer was full.
+     */
+    public boolean write(byte[] src, int off, int len) {
+        synchronized (writeLock) {
+            long h = head;
+            if (!hasRoom(h, len)) return false;
+            
+            int index = (int) (h & mask);
+            int first = Math.min(len, capacity - index);
+            System.arraycopy(src, off, buffer, index, first);
+            if (first < len) {
+                System.arraycopy(src, off + first, buffer, 0, len - first);
+            }
+            publish(h + len);
+            return true;
+        }
+    }
+    
+    /**
+     * Like {@link #write(byte[], int, int)}, but remembers when the chunk was captured so each cursor can
+     * tell how long it waited (see {@link Cursor#pickUp}).
+     *
+     * @param capturedNanos By {@link System#nanoTime()}.
+     */
+    public boolean write(byte[] src, int off, int len, long capturedNanos) {
+        synchronized (writeLock) {
+            long start = head;
+            if (!write(src, off, len)) return false;
+            
+            int index = (int) (stamps % STAMPS);
+            stampStarts[index] = start;
+            stampNanos[index] = capturedNanos;
+            stamps++; // Publishes the stamp
+            return true;
+        }
+    }
+    
+    /**
+     * Copies the remaining bytes of {@code src} into the buffer and advances its position. Works for heap and direct buffers.
+     *
+     * @return {@code true} if the chunk was queued, {@code false} if it was dropped (the position is left unchanged).
+     */
+    public boolean write(ByteBuffer src) {
+        synchronized (writeLock) {
+            int len = src.remaining();
+            long h = head;
+            if (!hasRoom(h, len)) return false;
+            
+            int index = (int) (h & mask);
+            int first = Math.min(len, capacity - index);
+            src.get(buffer, index, first);
+            if (first < len) {
+                src.get(buffer, 0, len - first);
+            }
+            publish(h + len);
+            return true;
+        }
+    }
+    
+    /**
+     * Encodes samples straight into the buffer as 16-bit little-endian PCM.
+     */
+    public boolean write(short[] src, int off, int len) {
+        synchronized (writeLock) {
+            long h = head;
+            if (!hasRoom(h, len * 2)) return false;
+            
+            for (int i = 0; i < len; i++) {
+                short sample = src[off + i];
+                buffer[(int) (h + 2L * i & mask)] = (byte) sample;
+                buffer[(int) (h + 2L * i + 1 & mask)] = (byte) (sample >> 8);
+            }
+            publish(h + len * 2L);
+            return true;
+        }
+    }
+    
+    /**
+     * Encodes the remaining samples of {@code src} as 16-bit little-endian PCM and advances its position.
+     */
+    public boolean write(ShortBuffer src) {
+        synchronized (writeLock) {
+            int len = src.remaining();
+            long h = head;
+            if (!hasRoom(h, len * 2)) return false;
+            
+            for (int i = 0; i < len; i++) {
+                short sample = src.get();
+                buffer[(int) (h + 2L * i & mask)] = (byte) sample;
+                buffer[(int) (h + 2L * i + 1 & mask)] = (byte) (sample >> 8);
+            }
+            publish(h + len * 2L);
+            return true;
+        }
+    }
+    
+    // Must be called while holding the write lock
+    private boolean hasRoom(long h, int len) {
+        if (len <= capacity - (h - slowestTail(h))) return true;
+        
+        overruns.incrementAndGet();
+        droppedBytes.addAndGet(len);
+        return false;
+    }
+    
+    private void publish(long newHead) {
+        head = newHead; // Publish the chunk to the consumers
+        for (Cursor cursor : cursors) cursor.signal();
+    }
+    
+    private long slowestTail(long h) {
+        long min = h;
+        for (Cursor cursor : cursors) min = Math.min(min, cursor.tail);
+        return min;
+    }
+    
+    /**
+     * Registers a new consumer. It starts at the current write position, so it only sees audio written from now on.
+     */
+    public synchronized Cursor openCursor() {
+        Cursor cursor = new Cursor(head, stamps);
+        Cursor[] grown = Arrays.copyOf(cursors, cursors.length + 1);
+        grown[grown.length - 1] = cursor;
+        cursors = grown;
+        return cursor;
+    }
+    
+    private synchronized void closeCursor(Cursor cursor) {
+        cursors = Arrays.stream(cursors).filter(c -> c != cursor).toArray(Cursor[]::new);
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * @return How many bytes can be written right now without an overrun.
+     */
+    public int free() {
+        long h = head;
+        return (int) (capacity - (h - slowestTail(h)));
+    }
+    
+    /**
+     * @return The number of chunks dropped because a decode stage could not keep up.
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+    
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+    
+    /**
+     * One consumer's read position. Each cursor must only be used from a single thread.
+     */
+    public class Cursor implements AutoCloseable {
+        // Total bytes this consumer has read
+        private volatile long tail;
+        
+        // The consumer thread currently parked in await(), if any
+        private volatile Thread waiter;
+        
+        // The first stamped chunk this consumer hasn't started reading yet
+        private long nextStamp;
+        
+        private Cursor(long tail, long nextStamp) {
+            this.tail = tail;
+            this.nextStamp = nextStamp;
+        }
+        
+        /**
+         * Copies up to {@code len} queued bytes out of the buffer.
+         *
+         * @return The number of bytes copied, possibly 0.
+         */
+        public int read(byte[] dst, int off, int len) {
+            long t = tail;
+            int n = (int) Math.min(len, head - t);
+            if (n <= 0) return 0;
+            
+            int index = (int) (t & mask);
+            int first = Math.min(n, capacity - index);
+            System.arraycopy(buffer, index, dst, off, first);
+            if (first < n) {
+                System.arraycopy(buffer, 0, dst, off + first, n - first);
+            }
+            
+            tail = t + n; // Hand the space back to the producer
+            return n;
+        }
+        
+        /**
+         * Parks the consumer until at least {@code minBytes} are queued or the timeout elapses.
+         *
+         * @return {@code true} if enough data is available.
+         */
+        public boolean await(int minBytes, long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (available() < minBytes) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) return false;
+                
+                waiter = Thread.currentThread();
+                // Re-check after publishing ourselves so a concurrent write can't be missed
+                if (available() < minBytes) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                waiter = null;
+            }
+            return true;
+        }
+        
+        /**
+         * Passes the capture time of every stamped chunk this cursor has started reading since the last call.
+         */
+        public void pickUp(LongConsumer capturedNanos) {
+            long count = stamps;
+            long t = tail;
+            nextStamp = Math.max(nextStamp, count - STAMPS); // Older stamps were overwritten
+            
+            while (nextStamp < count) {
+                int index = (int) (nextStamp % STAMPS);
+                if (stampStarts[index] >= t) return;
+                capturedNanos.accept(stampNanos[index]);
+                nextStamp++;
+            }
+        }
+        
+        private void signal() {
+            Thread w = waiter;
+            if (w != null) LockSupport.unpark(w);
+        }
+        
+        public int available() {
+            return (int) (head - tail);
+        }
+        
+        /**
+         * Unregisters this consumer so it no longer holds back the producer.
+         */
+        @Override
+        public void close() {
+            closeCursor(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.infinitytwogames.vosklib.audio;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Passes another source through unchanged while saving everything it delivers to a WAV file,
+ * in the source's own format, so the session can later be {@link ReplaySource replayed}.
+ * <p>
+ * A failing disk never interrupts capture: the recording stops and the audio keeps flowing.
+ */
+public class RecordingSource implements AudioSource {
+    private static final Logger logger = LogUtils.getLogger();
+    
+    private final AudioSource source;
+    private final Path file;
+    
+    // Plain file streams rather than a FileChannel: stopping interrupts the capture thread, which would close
+    // a channel before the tail of the audio and the header sizes are written
+    private RandomAccessFile raf;
+    private OutputStream out;
+    private boolean bigEndian;
+    private long recordedBytes = 0;
+    
+    public RecordingSource(AudioSource source, Path file) {
+        this.source = source;
+        this.file = file;
+    }
+    
+    @Override
+    public AudioFormat open() throws IOException, LineUnavailableException {
+        AudioFormat format = source.open();
+        bigEndian = format.isBigEndian();
+        
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            raf = new RandomAccessFile(file.toFile(), "rw");
+            raf.setLength(0);
+            raf.write(PcmFile.wavHeader(format, 0).array());
+            out = new BufferedOutputStream(new FileOutputStream(raf.getFD()), 64 * 1024);
+            logger.info("VoskLib: Recording the microphone to {}.", file);
+        } catch (IOException e) {
+            logger.error("VoskLib: Can't record to {}.", file, e);
+            closeFile();
+        }
+        return format;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        int n = source.read(buffer, off, len);
+        if (n > 0 && out != null) {
+            try {
+                out.write(buffer, off, n);
+                recordedBytes += n;
+            } catch (IOException e) {
+                logger.error("VoskLib: Recording to {} failed; capture continues without it.", file, e);
+                closeFile();
+            }
+        }
+        return n;
+    }
+    
+    @Override
+    public boolean isLive() {
+        return source.isLive();
+    }
+    
+    public long getRecordedBytes() {
+        return recordedBytes;
+    }
+    
+    @Override
+    public void close() {
+        source.close();
+        closeFile();
+    }
+    
+    private void closeFile() {
+        try (RandomAccessFile raf = this.raf) {
+            if (out != null) {
+                out.flush();
+                PcmFile.finishWav(raf, bigEndian, recordedBytes);
+            }
+        } catch (IOException e) {
+            logger.error("VoskLib: Failed to finish the recording {}.", file, e);
+        }
+        out = null;
+        raf = null;
+    }
+}
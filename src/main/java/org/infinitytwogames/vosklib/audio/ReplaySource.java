@@ -0,0 +1,148 @@
+package org.infinitytwogames.vosklib.audio;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recorded WAV or PCM file into the pipeline in place of the microphone, so a session can be
+ * reproduced on a machine without one.
+ * <p>
+ * At {@link Pacing#REAL_TIME} each read is held back until the moment its audio would have been
+ * captured, which reproduces the timing of a live session; at {@link Pacing#MAX_SPEED} the file is
+ * delivered as fast as the decoders take it. A little silence is appended so the last utterance is
+ * finalized the same way it would be if the player stopped talking.
+ */
+public class ReplaySource implements AudioSource {
+    private final Path file;
+    private final Pacing pacing;
+    private final int trailingSilenceMillis;
+    
+    private FileChannel channel;
+    private PcmFile.Layout layout;
+    private ByteBuffer wrapped;
+    private long position;
+    private long end;
+    private long silenceRemaining;
+    private double nanosPerByte;
+    
+    private long startNanos;
+    private volatile long deliveredBytes = 0;
+    private volatile long finishedNanos = 0;
+    private volatile long maxLagNanos = 0;
+    
+    public ReplaySource(Path file, Pacing pacing, int trailingSilenceMillis) {
+        this.file = file;
+        this.pacing = pacing;
+        this.trailingSilenceMillis = trailingSilenceMillis;
+    }
+    
+    @Override
+    public AudioFormat open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        layout = PcmFile.readLayout(channel, file);
+        
+        int frameSize = layout.frameSize();
+        position = layout.offset();
+        end = layout.offset() + layout.length() / frameSize * frameSize;
+        silenceRemaining = (long) layout.sampleRate() * trailingSilenceMillis / 1000 * frameSize;
+        nanosPerByte = 1e9 / ((double) layout.sampleRate() * frameSize);
+        startNanos = System.nanoTime();
+        return layout.toAudioFormat();
+    }
+    
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        len = len / layout.frameSize() * layout.frameSize();
+        int n;
+        if (position < end) {
+            // Reused as long as the caller keeps passing the same array, which the capture stage does
+            if (wrapped == null || wrapped.array() != buffer) wrapped = ByteBuffer.wrap(buffer);
+            wrapped.limit(off + (int) Math.min(len, end - position)).position(off);
+            
+            n = channel.read(wrapped, position);
+            if (n < 0) {
+                end = position;
+                n = 0;
+            }
+            position += n;
+        } else if (silenceRemaining > 0) {
+            n = (int) Math.min(len, silenceRemaining);
+            Arrays.fill(buffer, off, off + n, (byte) 0);
+            silenceRemaining -= n;
+        } else {
+            if (finishedNanos == 0) finishedNanos = System.nanoTime();
+            return -1;
+        }
+        
+        if (pacing == Pacing.REAL_TIME) pace(deliveredBytes + n);
+        deliveredBytes += n;
+        return n;
+    }
+    
+    // Waits until the last byte of the chunk would have been captured
+    private void pace(long bytes) {
+        long due = startNanos + (long) (bytes * nanosPerByte);
+        long wait = due - System.nanoTime();
+        if (wait < 0) {
+            maxLagNanos = Math.max(maxLagNanos, -wait); // The pipeline couldn't keep up with real time
+            return;
+        }
+        while (wait > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(wait);
+            wait = due - System.nanoTime();
+        }
+    }
+    
+    @Override
+    public boolean isLive() {
+        return pacing == Pacing.REAL_TIME;
+    }
+    
+    /**
+     * @return How much audio was delivered so far, including the appended silence.
+     */
+    public long getAudioNanos() {
+        return (long) (deliveredBytes * nanosPerByte);
+    }
+    
+    /**
+     * @return Wall-clock time from opening until the file ran out, or until now if it hasn't yet.
+     */
+    public long getElapsedNanos() {
+        long finished = finishedNanos;
+        return (finished != 0 ? finished : System.nanoTime()) - startNanos;
+    }
+    
+    /**
+     * @return The furthest a real-time replay fell behind its schedule because the pipeline was busy.
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+    
+    public Path getFile() {
+        return file;
+    }
+    
+    @Override
+    public void close() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+            // Read-only; nothing is lost
+        }
+    }
+    
+    public enum Pacing {
+        /** As fast as it was recorded. */
+        REAL_TIME,
+        /** As fast as the decoders go. */
+        MAX_SPEED
+    }
+}
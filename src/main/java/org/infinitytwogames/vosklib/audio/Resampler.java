@@ -0,0 +1,193 @@
+package org.infinitytwogames.vosklib.audio;
+
+import java.util.Arrays;
+
+/**
+ * Converts interleaved 16-bit PCM at any rate and channel count into 16-bit little-endian mono at
+ * another rate, for example a 48 kHz stereo headset into the 16 kHz mono Vosk expects.
+ * <p>
+ * Channels are averaged, then a polyphase windowed-sinc FIR resamples by the rational factor
+ * {@code outRate / inRate} (reduced, e.g. 44100 to 16000 is 160/441). Every buffer is allocated
+ * in the constructor, so {@link #process} never allocates. Keeps filter state between calls, so a
+ * stream can be fed in arbitrary chunks. Not thread-safe; owned by the capture stage.
+ */
+public class Resampler {
+    private static final int MIN_TAPS = 16;
+    
+    // Fraction of the lower rate's Nyquist frequency: 16 kHz output keeps up to about 7 kHz flat and rejects 8 kHz
+    private static final double CUTOFF = 0.94;
+    
+    // Filter length per output sample, at the lower rate; sets the transition band to about a sixteenth of that rate
+    private static final int TAPS_PER_OUTPUT = 96;
+    
+    private final int inRate;
+    private final int outRate;
+    private final int channels;
+    private final boolean bigEndian;
+    private final int maxInputFrames;
+    
+    // Upsample by up, downsample by down
+    private final int up;
+    private final int down;
+    private final int taps;
+    
+    // coefficients[phase * taps + k] multiplies the k-th most recent input sample
+    private final float[] coefficients;
+    
+    // The last (taps - 1) input samples followed by the current chunk, downmixed
+    private final float[] work;
+    
+    // Position of the next output sample: input index into work, plus a fraction phase / up
+    private int position;
+    private int phase = 0;
+    
+    /**
+     * @param maxInputFrames The most frames a single {@link #process} call will be given.
+     */
+    public Resampler(int inRate, int outRate, int channels, boolean bigEndian, int maxInputFrames) {
+        if (inRate <= 0 || outRate <= 0 || channels <= 0 || maxInputFrames <= 0) {
+            throw new IllegalArgumentException("Rates, channels and frame count must be positive.");
+        }
+        this.inRate = inRate;
+        this.outRate = outRate;
+        this.channels = channels;
+        this.bigEndian = bigEndian;
+        this.maxInputFrames = maxInputFrames;
+        
+        int gcd = gcd(inRate, outRate);
+        this.up = outRate / gcd;
+        this.down = inRate / gcd;
+        
+        // More taps the harder we decimate, so the transition band stays just as narrow at the output rate
+        this.taps = Math.max(MIN_TAPS, (int) Math.ceil(TAPS_PER_OUTPUT * Math.max(1.0, (double) down / up)));
+        this.coefficients = design(up, taps, CUTOFF * Math.min(1.0, (double) up / down));
+        
+        this.work = new float[taps - 1 + maxInputFrames];
+        this.position = taps - 1;
+    }
+    
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+    
+    /**
+     * Designs the prototype low-pass at the upsampled rate and splits it into {@code up} phases.
+     *
+     * @param cutoff The cutoff as a fraction of the input Nyquist frequency.
+     */
+    private static float[] design(int up, int taps, double cutoff) {
+        int length = up * taps;
+        double center = (length - 1) / 2.0;
+        double fc = cutoff / up; // Normalized to the upsampled rate's Nyquist
+        
+        double[] prototype = new double[length];
+        for (int j = 0; j < length; j++) {
+            double x = j - center;
+            double sinc = x == 0 ? fc : Math.sin(Math.PI * fc * x) / (Math.PI * x);
+            // Blackman: a Kaiser window would be sharper, but for speech this is plenty
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * j / (length - 1)) + 0.08 * Math.cos(4 * Math.PI * j / (length - 1));
+            prototype[j] = sinc * window;
+        }
+        
+        // Phase p uses prototype[p + k * up]; normalize each phase for unity gain at DC
+        float[] coefficients = new float[length];
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            for (int k = 0; k < taps; k++) sum += prototype[p + k * up];
+            for (int k = 0; k < taps; k++) {
+                coefficients[p * taps + k] = (float) (prototype[p + k * up] / sum);
+            }
+        }
+        return coefficients;
+    }
+    
+    /**
+     * Resamples a chunk of interleaved input. Trailing bytes that don't make up a whole frame are ignored.
+     *
+     * @param out Receives 16-bit little-endian mono; must hold at least {@link #maxOutputBytes(int)} bytes.
+     * @return The number of bytes written to {@code out}.
+     */
+    public int process(byte[] in, int off, int len, byte[] out, int outOff) {
+        int frameSize = channels * 2;
+        int frames = Math.min(len / frameSize, maxInputFrames);
+        int history = taps - 1;
+        
+        // Downmix into the work buffer after the history
+        float scale = 1.0f / channels;
+        for (int f = 0, i = off; f < frames; f++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++, i += 2) sum += sample(in, i);
+            work[history + f] = sum * scale;
+        }
+        
+        int end = history + frames;
+        int o = outOff;
+        while (position < end) {
+            int base = phase * taps;
+            float acc = 0;
+            for (int k = 0; k < taps; k++) acc += coefficients[base + k] * work[position - k];
+            
+            int s = Math.round(acc);
+            if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+            else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+            out[o++] = (byte) s;
+            out[o++] = (byte) (s >> 8);
+            
+            phase += down;
+            position += phase / up;
+            phase %= up;
+        }
+        
+        // Keep the newest samples as history for the next chunk
+        System.arraycopy(work, end - history, work, 0, history);
+        position -= frames;
+        return o - outOff;
+    }
+    
+    private int sample(byte[] pcm, int i) {
+        return bigEndian
+                ? (short) ((pcm[i] << 8) | (pcm[i + 1] & 0xFF))
+                : (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+    }
+    
+    /**
+     * Clears the filter state, e.g. before a new, unrelated stream.
+     */
+    public void reset() {
+        Arrays.fill(work, 0, taps - 1, 0f);
+        position = taps - 1;
+        phase = 0;
+    }
+    
+    /**
+     * @return The largest number of bytes {@link #process} can produce from {@code inputBytes} of input.
+     */
+    public int maxOutputBytes(int inputBytes) {
+        long frames = Math.min(inputBytes / (channels * 2), maxInputFrames);
+        return (int) ((frames * up + down - 1) / down + 1) * 2;
+    }
+    
+    /**
+     * @return Whether this resampler would only copy, i.e. the input already is mono at the output rate.
+     */
+    public boolean isPassthrough() {
+        return inRate == outRate && channels == 1 && !bigEndian;
+    }
+    
+    public int getInputRate() {
+        return inRate;
+    }
+    
+    public int getOutputRate() {
+        return outRate;
+    }
+    
+    public int getChannels() {
+        return channels;
+    }
+}
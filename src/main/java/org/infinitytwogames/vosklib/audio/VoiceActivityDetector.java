@@ -0,0 +1,214 @@
+package org.infinitytwogames.vosklib.audio;
+
+/**
+ * A cheap energy + zero-crossing voice activity detector for 16-bit little-endian mono PCM.
+ * <p>
+ * Each chunk is split into 20 ms analysis frames. A chunk counts as speech if any frame is loud
+ * enough, or is slightly quieter but crosses zero often (unvoiced sounds like "s" and "f").
+ * A hangover keeps the gate open for a while after the last speech frame so trailing words aren't
+ * cut, and the most recent silent audio is kept as pre-roll so word onsets reach the recognizer.
+ * <p>
+ * Not thread-safe; owned by the decode stage.
+ */
+public class VoiceActivityDetector {
+    // How far below the energy threshold a frame may be if it has a high zero-crossing rate
+    private static final double UNVOICED_MARGIN_DB = 10.0;
+    private static final int FRAME_MS = 20;
+    
+    private final int sampleRate;
+    private final int frameSamples;
+    
+    private boolean enabled = true;
+    private double energyThreshold; // Linear RMS, compared against squared sums
+    private double unvoicedThreshold;
+    private double zcrThreshold;
+    private long hangoverSamples;
+    
+    private byte[] preRoll = new byte[0];
+    private int preRollStart = 0;
+    private int preRollLength = 0;
+    
+    private boolean inSpeech = false;
+    private long hangoverRemaining = 0;
+    
+    // Written by the decode stage only, read by anyone
+    private volatile long skippedFrames = 0;
+    private volatile long decodedFrames = 0;
+    
+    public VoiceActivityDetector(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.frameSamples = sampleRate * FRAME_MS / 1000;
+        configure(true, -45.0, 0.25, 800, 300);
+    }
+    
+    /**
+     * @param energyThresholdDb Frames with an RMS level above this (in dBFS) count as speech.
+     * @param zcrThreshold      Zero crossings per sample above which a quieter frame still counts as speech.
+     * @param hangoverMs        How long the gate stays open after the last speech frame.
+     * @param preRollMs         How much audio before the onset is replayed to the recognizer.
+     */
+    public void configure(boolean enabled, double energyThresholdDb, double zcrThreshold, int hangoverMs, int preRollMs) {
+        this.enabled = enabled;
+        this.energyThreshold = dbToAmplitude(energyThresholdDb);
+        this.unvoicedThreshold = dbToAmplitude(energyThresholdDb - UNVOICED_MARGIN_DB);
+        this.zcrThreshold = zcrThreshold;
+        this.hangoverSamples = (long) sampleRate * hangoverMs / 1000;
+        
+        int preRollBytes = (sampleRate * preRollMs / 1000) * 2;
+        if (preRoll.length != preRollBytes) {
+            preRoll = new byte[preRollBytes];
+        }
+        reset();
+    }
+    
+    private static double dbToAmplitude(double db) {
+        return Math.pow(10, db / 20.0) * Short.MAX_VALUE;
+    }
+    
+    public void reset() {
+        inSpeech = false;
+        hangoverRemaining = 0;
+        preRollStart = 0;
+        preRollLength = 0;
+    }
+    
+    /**
+     * Classifies a chunk and updates the gate state.
+     * When the chunk is {@link Decision#SKIP skipped} it is remembered as pre-roll.
+     */
+    public Decision process(byte[] pcm, int len) {
+        if (!enabled) {
+            decodedFrames++;
+            return Decision.DECODE;
+        }
+        
+        int samples = len / 2;
+        if (containsSpeech(pcm, samples)) {
+            hangoverRemaining = hangoverSamples;
+            decodedFrames++;
+            
+            if (!inSpeech) {
+                inSpeech = true;
+                return Decision.ONSET;
+            }
+            return Decision.DECODE;
+        }
+        
+        if (inSpeech) {
+            hangoverRemaining -= samples;
+            decodedFrames++;
+            
+            if (hangoverRemaining <= 0) {
+                inSpeech = false;
+                return Decision.END_OF_SPEECH;
+            }
+            return Decision.DECODE;
+        }
+        
+        skippedFrames++;
+        remember(pcm, len);
+        return Decision.SKIP;
+    }
+    
+    private boolean containsSpeech(byte[] pcm, int samples) {
+        for (int start = 0; start < samples; start += frameSamples) {
+            int end = Math.min(samples, start + frameSamples);
+            int count = end - start;
+            
+            double energy = 0;
+            int crossings = 0;
+            int previous = sample(pcm, start);
+            
+            for (int i = start; i < end; i++) {
+                int s = sample(pcm, i);
+                energy += (double) s * s;
+                if ((s ^ previous) < 0) crossings++;
+                previous = s;
+            }
+            
+            double meanSquare = energy / count;
+            if (meanSquare >= energyThreshold * energyThreshold) return true;
+            if (meanSquare >= unvoicedThreshold * unvoicedThreshold && (double) crossings / count >= zcrThreshold) return true;
+        }
+        return false;
+    }
+    
+    private static int sample(byte[] pcm, int index) {
+        int i = index << 1;
+        return (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+    }
+    
+    private void remember(byte[] pcm, int len) {
+        int capacity = preRoll.length;
+        if (capacity == 0) return;
+        
+        // Only the newest bytes fit; older ones are overwritten
+        int off = Math.max(0, len - capacity);
+        int n = len - off;
+        
+        int writeIndex = (preRollStart + preRollLength) % capacity;
+        int first = Math.min(n, capacity - writeIndex);
+        System.arraycopy(pcm, off, preRoll, writeIndex, first);
+        if (first < n) {
+            System.arraycopy(pcm, off + first, preRoll, 0, n - first);
+        }
+        
+        int total = preRollLength + n;
+        if (total > capacity) {
+            preRollStart = (preRollStart + total - capacity) % capacity;
+            preRollLength = capacity;
+        } else {
+            preRollLength = total;
+        }
+    }
+    
+    /**
+     * Copies the buffered pre-roll into {@code dst} in chronological order and clears it.
+     *
+     * @return The number of bytes copied.
+     */
+    public int drainPreRoll(byte[] dst) {
+        int n = Math.min(preRollLength, dst.length) & ~1; // Keep whole samples
+        int capacity = preRoll.length;
+        int first = Math.min(n, capacity - preRollStart);
+        
+        System.arraycopy(preRoll, preRollStart, dst, 0, first);
+        if (first < n) {
+            System.arraycopy(preRoll, 0, dst, first, n - first);
+        }
+        
+        preRollStart = 0;
+        preRollLength = 0;
+        return n;
+    }
+    
+    public int getPreRollCapacity() {
+        return preRoll.length;
+    }
+    
+    /**
+     * @return Whether the gate is open: speech started and the hangover hasn't run out yet.
+     */
+    public boolean isInSpeech() {
+        return inSpeech;
+    }
+    
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+    
+    public long getDecodedFrames() {
+        return decodedFrames;
+    }
+    
+    public enum Decision {
+        /** Silence: don't send it to the recognizer. */
+        SKIP,
+        /** Speech just started: replay the pre-roll, then decode this chunk. */
+        ONSET,
+        /** Speech (or hangover): decode this chunk. */
+        DECODE,
+        /** The hangover ran out: decode this chunk, then flush the recognizer. */
+        END_OF_SPEECH
+    }
+}
@@ -0,0 +1,19 @@
+package org.infinitytwogames.vosklib.commands;
+
+import org.infinitytwogames.vosklib.recognition.RecognitionResult;
+
+/**
+ * A registered phrase found in a recognized sentence.
+ *
+ * @param phrase    The phrase as it was registered.
+ * @param result    The whole sentence it was found in.
+ * @param channel   The recognition channel that heard it.
+ * @param startWord Index of the phrase's first word in the sentence.
+ * @param endWord   Index just past the phrase's last word.
+ * @param score     1 for an exact match, lower for one that only sounded similar.
+ */
+public record CommandMatch(String phrase, RecognitionResult result, String channel, int startWord, int endWord, double score) {
+    public boolean isExact() {
+        return score >= 1.0;
+    }
+}
@@ -0,0 +1,135 @@
+package org.infinitytwogames.vosklib.commands;
+
+/**
+ * Lawrence Philips' original Metaphone: reduces an English word to a key of consonant sounds,
+ * so words that sound alike ("craft", "graft", "kraft") get the same or nearly the same key.
+ * <p>
+ * {@code 0} stands for "th" and {@code X} for "sh"/"ch". Vowels are only kept at the start of a word.
+ */
+public class Metaphone {
+    private Metaphone() {}
+    
+    public static String encode(String word) {
+        String w = normalize(word);
+        if (w.isEmpty()) return "";
+        
+        StringBuilder key = new StringBuilder(w.length());
+        int i = 0;
+        
+        // Silent or changed first letters
+        if (w.startsWith("AE") || w.startsWith("GN") || w.startsWith("KN") || w.startsWith("PN") || w.startsWith("WR")) {
+            i = 1;
+        } else if (w.charAt(0) == 'X') {
+            key.append('S');
+            i = 1;
+        } else if (w.startsWith("WH")) {
+            key.append('W');
+            i = 2;
+        }
+        
+        for (; i < w.length(); i++) {
+            char c = w.charAt(i);
+            
+            // Doubled letters sound once, except C ("accept")
+            if (c != 'C' && i > 0 && w.charAt(i - 1) == c) continue;
+            
+            switch (c) {
+                case 'A', 'E', 'I', 'O', 'U' -> {
+                    if (i == 0) key.append(c);
+                }
+                case 'B' -> {
+                    // "dumb", "climb"
+                    if (!(i == w.length() - 1 && at(w, i - 1) == 'M')) key.append('B');
+                }
+                case 'C' -> {
+                    if (matches(w, i, "CIA") || matches(w, i, "CH")) {
+                        key.append(at(w, i - 1) == 'S' ? 'K' : 'X'); // "school"
+                        if (at(w, i + 1) == 'H') i++;
+                    } else if (isOneOf(at(w, i + 1), "IEY")) {
+                        if (at(w, i - 1) != 'S') key.append('S'); // "science"
+                    } else {
+                        key.append('K');
+                    }
+                }
+                case 'D' -> {
+                    if (at(w, i + 1) == 'G' && isOneOf(at(w, i + 2), "EIY")) {
+                        key.append('J'); // "edge"
+                        i++;
+                    } else {
+                        key.append('T');
+                    }
+                }
+                case 'G' -> {
+                    if (at(w, i + 1) == 'H' && i + 2 < w.length() && !isVowel(at(w, i + 2))) {
+                        // "night", "though": silent
+                    } else if (at(w, i + 1) == 'N' && (i + 2 == w.length() || (matches(w, i + 1, "NED") && i + 4 == w.length()))) {
+                        // "sign", "signed": silent
+                    } else if (isOneOf(at(w, i + 1), "IEY") && at(w, i - 1) != 'G') {
+                        key.append('J');
+                    } else {
+                        key.append('K');
+                    }
+                }
+                case 'H' -> {
+                    if (!isOneOf(at(w, i - 1), "CSPTG") && isVowel(at(w, i + 1))) key.append('H');
+                }
+                case 'K' -> {
+                    if (at(w, i - 1) != 'C') key.append('K');
+                }
+                case 'P' -> key.append(at(w, i + 1) == 'H' ? 'F' : 'P');
+                case 'Q' -> key.append('K');
+                case 'S' -> {
+                    if (at(w, i + 1) == 'H' || matches(w, i, "SIO") || matches(w, i, "SIA")) {
+                        key.append('X');
+                        if (at(w, i + 1) == 'H') i++;
+                    } else {
+                        key.append('S');
+                    }
+                }
+                case 'T' -> {
+                    if (matches(w, i, "TIA") || matches(w, i, "TIO")) {
+                        key.append('X');
+                    } else if (at(w, i + 1) == 'H') {
+                        key.append('0');
+                        i++;
+                    } else if (!matches(w, i, "TCH")) {
+                        key.append('T');
+                    }
+                }
+                case 'V' -> key.append('F');
+                case 'W', 'Y' -> {
+                    if (isVowel(at(w, i + 1))) key.append(c);
+                }
+                case 'X' -> key.append("KS");
+                case 'Z' -> key.append('S');
+                default -> key.append(c); // F J L M N R and digits
+            }
+        }
+        return key.toString();
+    }
+    
+    private static String normalize(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toUpperCase(word.charAt(i));
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) sb.append(c);
+        }
+        return sb.toString();
+    }
+    
+    private static char at(String w, int i) {
+        return i >= 0 && i < w.length() ? w.charAt(i) : '\0';
+    }
+    
+    private static boolean matches(String w, int i, String s) {
+        return w.startsWith(s, i);
+    }
+    
+    private static boolean isVowel(char c) {
+        return isOneOf(c, "AEIOU");
+    }
+    
+    private static boolean isOneOf(char c, String chars) {
+        return c != '\0' && chars.indexOf(c) >= 0;
+    }
+}
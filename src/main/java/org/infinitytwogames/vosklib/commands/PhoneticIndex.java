@@ -0,0 +1,195 @@
+package org.infinitytwogames.vosklib.commands;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Finds the registered phrase that sounds most like a recognized one, for commands the recognizer
+ * heard as a near-homophone ("graft" for "craft").
+ * <p>
+ * Every phrase is reduced to its {@link Metaphone} key once, when the index is built, and the keys
+ * go into a BK-tree. A lookup then only compares against the handful of keys the tree can't rule
+ * out by the triangle inequality, instead of edit-distancing every phrase. Immutable once built.
+ * <p>
+ * Short keys collide far too easily ("go", "key", "cow" and "queue" all encode to {@code K}), so
+ * phrases and heard words whose key is shorter than {@value #MIN_KEY_LENGTH} are never matched by
+ * sound, and a match must also be about as long as the phrase when spelled out.
+ *
+ * @param <T> What each phrase maps to.
+ */
+public class PhoneticIndex<T> {
+    static final int MIN_KEY_LENGTH = 3;
+    
+    // Shorter spelling over longer; below this the heard words can't plausibly be the phrase
+    private static final double MIN_LENGTH_RATIO = 0.6;
+    
+    private final Node<T> root;
+    private final int[] phraseLengths; // Window lengths in words to try, ascending
+    
+    private PhoneticIndex(Node<T> root, int[] phraseLengths) {
+        this.root = root;
+        this.phraseLengths = phraseLengths;
+    }
+    
+    /**
+     * Looks for the best-sounding phrase anywhere in {@code text}, trying every run of words about as long as some phrase.
+     *
+     * @param threshold The lowest acceptable score, between 0 and 1.
+     * @return The best match, or {@code null} if nothing scores at least {@code threshold}.
+     */
+    public Match<T> find(CharSequence text, double threshold) {
+        if (root == null) return null;
+        
+        List<String> words = PhraseMatcher.tokenize(text);
+        String[] keys = new String[words.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = Metaphone.encode(words.get(i));
+        
+        Match<T> best = null;
+        for (int length : phraseLengths) {
+            for (int start = 0; start + length <= keys.length; start++) {
+                String key = String.join("", Arrays.asList(keys).subList(start, start + length));
+                String spoken = String.join(" ", words.subList(start, start + length));
+                
+                Match<T> match = search(key, spoken, threshold, start, start + length);
+                if (match != null && (best == null || match.score() > best.score())) best = match;
+            }
+        }
+        return best;
+    }
+    
+    private Match<T> search(String key, String spoken, double threshold, int startWord, int endWord) {
+        if (key.length() < MIN_KEY_LENGTH) return null;
+        
+        // score = 1 - d / max(len); the longest the other key can be is len + d, which bounds d
+        int maxDistance = (int) ((1 - threshold) * key.length() / Math.max(threshold, 1e-9));
+        
+        Match<T> best = null;
+        int bestSpelling = Integer.MAX_VALUE;
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            int distance = levenshtein(key, node.key);
+            
+            if (distance <= maxDistance) {
+                double score = 1.0 - (double) distance / Math.max(key.length(), node.key.length());
+                
+                // Homophones share a key ("right", "write"); prefer the one that is also spelled like what was heard
+                for (Entry<T> entry : node.entries) {
+                    if (score < threshold || (best != null && score < best.score())) break;
+                    if (lengthRatio(spoken, entry.phrase) < MIN_LENGTH_RATIO) continue;
+                    
+                    int spelling = levenshtein(spoken, entry.phrase);
+                    if (best == null || score > best.score() || spelling < bestSpelling) {
+                        best = new Match<>(entry.value, entry.phrase, score, startWord, endWord);
+                        bestSpelling = spelling;
+                    }
+                }
+            }
+            
+            // Only children within maxDistance of our distance can hold a close enough key
+            for (Map.Entry<Integer, Node<T>> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) stack.push(child.getValue());
+            }
+        }
+        return best;
+    }
+    
+    private static double lengthRatio(String a, String b) {
+        return (double) Math.min(a.length(), b.length()) / Math.max(a.length(), b.length());
+    }
+    
+    static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[b.length()];
+    }
+    
+    /**
+     * A phrase that sounds like part of the text.
+     *
+     * @param phrase    The phrase as it was added, lowercased.
+     * @param score     1 if it sounds the same, lower the more it differs.
+     * @param startWord Index of the first matched word in the text.
+     * @param endWord   Index just past the last matched word.
+     */
+    public record Match<T>(T value, String phrase, double score, int startWord, int endWord) {}
+    
+    private record Entry<T>(String phrase, T value) {}
+    
+    private static class Node<T> {
+        final String key;
+        final List<Entry<T>> entries = new ArrayList<>(1);
+        final Map<Integer, Node<T>> children = new HashMap<>();
+        
+        Node(String key) {
+            this.key = key;
+        }
+    }
+    
+    public static class Builder<T> {
+        private Node<T> root;
+        private final TreeSet<Integer> lengths = new TreeSet<>();
+        
+        public Builder<T> add(String phrase, T value) {
+            List<String> words = PhraseMatcher.tokenize(phrase);
+            if (words.isEmpty()) return this;
+            
+            // Keys ignore word boundaries, and lookups try one word more or less, so "inventory" heard as "in ventry" still matches
+            StringBuilder key = new StringBuilder();
+            for (String word : words) key.append(Metaphone.encode(word));
+            if (key.length() < MIN_KEY_LENGTH) return this; // Only ever matched exactly
+            insert(key.toString(), new Entry<>(String.join(" ", words), value));
+            
+            for (int n = Math.max(1, words.size() - 1); n <= words.size() + 1; n++) lengths.add(n);
+            return this;
+        }
+        
+        private void insert(String key, Entry<T> entry) {
+            if (root == null) {
+                root = new Node<>(key);
+                root.entries.add(entry);
+                return;
+            }
+            
+            Node<T> node = root;
+            while (true) {
+                int distance = levenshtein(key, node.key);
+                if (distance == 0) {
+                    node.entries.add(entry);
+                    return;
+                }
+                
+                Node<T> child = node.children.get(distance);
+                if (child == null) {
+                    child = new Node<>(key);
+                    child.entries.add(entry);
+                    node.children.put(distance, child);
+                    return;
+                }
+                node = child;
+            }
+        }
+        
+        public PhoneticIndex<T> build() {
+            return new PhoneticIndex<>(root, lengths.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.infinitytwogames.vosklib.commands;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An Aho-Corasick automaton over whole words, finding every registered phrase in a text in one pass.
+ * <p>
+ * Matching works on words rather than characters, so "craft" doesn't fire inside "aircraft", and
+ * costs the same whether there are ten phrases or ten thousand. Immutable once built, so one
+ * instance can be shared by any number of threads.
+ *
+ * @param <T> What each phrase maps to.
+ */
+public class PhraseMatcher<T> {
+    private static final int ROOT = 0;
+    
+    private final Map<String, Integer> vocabulary;
+    private final List<T> values;
+    
+    // Per node: sorted word ids of the outgoing edges, and the nodes they lead to
+    private final int[][] edgeWords;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    
+    // Per node: every phrase (index into values) ending here, including through suffix links
+    private final int[][] outputs;
+    private final int[] phraseLengths;
+    
+    private PhraseMatcher(Map<String, Integer> vocabulary, List<T> values, int[][] edgeWords, int[][] edgeTargets,
+                          int[] fail, int[][] outputs, int[] phraseLengths) {
+        this.vocabulary = vocabulary;
+        this.values = values;
+        this.edgeWords = edgeWords;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputs = outputs;
+        this.phraseLengths = phraseLengths;
+    }
+    
+    /**
+     * Finds every occurrence of every phrase in {@code text}, in the order they end.
+     */
+    public List<Hit<T>> match(CharSequence text) {
+        List<Hit<T>> hits = new ArrayList<>();
+        int node = ROOT;
+        int wordIndex = 0;
+        
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            // Next word
+            while (i < length && !isWordChar(text.charAt(i))) i++;
+            if (i >= length) break;
+            int start = i;
+            while (i < length && isWordChar(text.charAt(i))) i++;
+            
+            Integer word = vocabulary.get(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT));
+            if (word == null) {
+                // No phrase contains this word, so nothing can continue through it
+                node = ROOT;
+            } else {
+                node = step(node, word);
+                for (int phrase : outputs[node]) {
+                    hits.add(new Hit<>(values.get(phrase), wordIndex - phraseLengths[phrase] + 1, wordIndex + 1));
+                }
+            }
+            wordIndex++;
+        }
+        return hits;
+    }
+    
+    private int step(int node, int word) {
+        while (true) {
+            int target = edge(node, word);
+            if (target >= 0) return target;
+            if (node == ROOT) return ROOT;
+            node = fail[node];
+        }
+    }
+    
+    private int edge(int node, int word) {
+        int index = Arrays.binarySearch(edgeWords[node], word);
+        return index >= 0 ? edgeTargets[node][index] : -1;
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '\'';
+    }
+    
+    /**
+     * Splits a phrase into lowercase words the way {@link #match} does.
+     */
+    static List<String> tokenize(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isWordChar(text.charAt(i))) i++;
+            if (i >= length) break;
+            int start = i;
+            while (i < length && isWordChar(text.charAt(i))) i++;
+            words.add(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+    
+    /**
+     * One occurrence of a phrase.
+     *
+     * @param startWord Index of the phrase's first word in the text.
+     * @param endWord   Index just past the phrase's last word.
+     */
+    public record Hit<T>(T value, int startWord, int endWord) {}
+    
+    public static class Builder<T> {
+        private final Map<String, Integer> vocabulary = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+        private final List<Map<Integer, Integer>> children = new ArrayList<>();
+        private final List<List<Integer>> terminals = new ArrayList<>();
+        private final List<Integer> phraseLengths = new ArrayList<>();
+        
+        public Builder() {
+            newNode();
+        }
+        
+        private int newNode() {
+            children.add(new HashMap<>());
+            terminals.add(new ArrayList<>());
+            return children.size() - 1;
+        }
+        
+        /**
+         * Adds a phrase. Phrases without any words are ignored; the same phrase may be added for several values.
+         */
+        public Builder<T> add(String phrase, T value) {
+            List<String> words = tokenize(phrase);
+            if (words.isEmpty()) return this;
+            
+            int node = ROOT;
+            for (String word : words) {
+                int id = vocabulary.computeIfAbsent(word, w -> vocabulary.size());
+                Integer next = children.get(node).get(id);
+                if (next == null) {
+                    next = newNode();
+                    children.get(node).put(id, next);
+                }
+                node = next;
+            }
+            
+            terminals.get(node).add(values.size());
+            values.add(value);
+            phraseLengths.add(words.size());
+            return this;
+        }
+        
+        public PhraseMatcher<T> build() {
+            int nodes = children.size();
+            int[][] edgeWords = new int[nodes][];
+            int[][] edgeTargets = new int[nodes][];
+            
+            for (int n = 0; n < nodes; n++) {
+                int[] words = children.get(n).keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+                int[] targets = new int[words.length];
+                for (int e = 0; e < words.length; e++) targets[e] = children.get(n).get(words[e]);
+                edgeWords[n] = words;
+                edgeTargets[n] = targets;
+            }
+            
+            // Breadth-first, so every node's fail target is finished before the node itself
+            int[] fail = new int[nodes];
+            int[][] outputs = new int[nodes][];
+            outputs[ROOT] = new int[0];
+            
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int target : edgeTargets[ROOT]) {
+                fail[target] = ROOT;
+                outputs[target] = toArray(terminals.get(target));
+                queue.add(target);
+            }
+            
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (int e = 0; e < edgeWords[node].length; e++) {
+                    int word = edgeWords[node][e];
+                    int child = edgeTargets[node][e];
+                    
+                    int f = fail[node];
+                    while (f != ROOT && indexOf(edgeWords[f], word) < 0) f = fail[f];
+                    int fe = indexOf(edgeWords[f], word);
+                    fail[child] = fe >= 0 && edgeTargets[f][fe] != child ? edgeTargets[f][fe] : ROOT;
+                    
+                    // A phrase ending at the suffix also ends here
+                    int[] own = toArray(terminals.get(child));
+                    int[] inherited = outputs[fail[child]];
+                    int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+                    System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+                    outputs[child] = merged;
+                    
+                    queue.add(child);
+                }
+            }
+            
+            int[] lengths = phraseLengths.stream().mapToInt(Integer::intValue).toArray();
+            return new PhraseMatcher<>(Map.copyOf(vocabulary), List.copyOf(values), edgeWords, edgeTargets, fail, outputs, lengths);
+        }
+        
+        private static int indexOf(int[] sorted, int word) {
+            return Arrays.binarySearch(sorted, word);
+        }
+        
+        private static int[] toArray(List<Integer> list) {
+            return list.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.infinitytwogames.vosklib.commands;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A registered voice command: one or more phrases, the recognition channel they are listened for on,
+ * and what to do when one of them is said. Returned by {@link VoiceCommands#register}; keep it to
+ * {@link #unregister()} later.
+ */
+public class VoiceCommand {
+    private final String channel;
+    private final List<String> phrases;
+    private final Consumer<CommandMatch> handler;
+    
+    VoiceCommand(String channel, List<String> phrases, Consumer<CommandMatch> handler) {
+        this.channel = channel;
+        this.phrases = List.copyOf(phrases);
+        this.handler = handler;
+    }
+    
+    public String getChannel() {
+        return channel;
+    }
+    
+    public List<String> getPhrases() {
+        return phrases;
+    }
+    
+    Consumer<CommandMatch> getHandler() {
+        return handler;
+    }
+    
+    public void unregister() {
+        VoiceCommands.unregister(this);
+    }
+}
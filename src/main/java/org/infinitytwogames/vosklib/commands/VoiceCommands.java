@@ -0,0 +1,182 @@
+package org.infinitytwogames.vosklib.commands;
+
+import com.mojang.logging.LogUtils;
+import org.infinitytwogames.vosklib.data.Config;
+import org.infinitytwogames.vosklib.recognition.RecognitionChannel;
+import org.infinitytwogames.vosklib.recognition.RecognitionResult;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * One registry for every mod's voice commands.
+ * <p>
+ * Instead of each mod subscribing to {@code VoskVoiceEvent.Result} and scanning its own command
+ * list on the main thread, all phrases are compiled into a single {@link PhraseMatcher}. Each
+ * result is matched once, on the decode thread, and only the handlers of the commands that were
+ * actually said are run on the main thread. A command fires at most once per sentence.
+ * <p>
+ * Every command belongs to one recognition channel, the default one unless it was registered for
+ * another, and is only matched against that channel's results. A dictation channel running next
+ * to the command grammar therefore can't fire the same handler a second time.
+ * <p>
+ * If no phrase matches exactly and {@code fuzzy_command_threshold} is turned on, the {@link PhoneticIndex}
+ * is asked for the phrase that sounds most like part of the sentence, so a command heard as a
+ * near-homophone still fires (with a score below 1).
+ */
+public class VoiceCommands {
+    private static final Logger logger = LogUtils.getLogger();
+    
+    private static final List<VoiceCommand> commands = new CopyOnWriteArrayList<>();
+    
+    // One matcher per channel, rebuilt lazily on the next match after the registrations changed
+    private static volatile Map<String, Compiled> compiled;
+    
+    private VoiceCommands() {}
+    
+    /**
+     * Registers {@code handler} for every phrase in {@code phrases}, said on the default channel.
+     * Case and punctuation don't matter. The handler runs on the main thread.
+     */
+    public static VoiceCommand register(Consumer<CommandMatch> handler, String... phrases) {
+        return register(List.of(phrases), handler);
+    }
+    
+    public static VoiceCommand register(List<String> phrases, Consumer<CommandMatch> handler) {
+        return register(RecognitionChannel.DEFAULT_ID, phrases, handler);
+    }
+    
+    /**
+     * Registers {@code handler} for every phrase in {@code phrases}, said on the recognition channel {@code channel}.
+     */
+    public static VoiceCommand register(String channel, List<String> phrases, Consumer<CommandMatch> handler) {
+        VoiceCommand command = new VoiceCommand(channel, phrases, handler);
+        
+        // Under the same lock as the rebuild, so a rebuild in progress can't overwrite the invalidation
+        synchronized (VoiceCommands.class) {
+            commands.add(command);
+            compiled = null;
+        }
+        return command;
+    }
+    
+    public static void unregister(VoiceCommand command) {
+        synchronized (VoiceCommands.class) {
+            if (commands.remove(command)) compiled = null;
+        }
+    }
+    
+    public static List<VoiceCommand> getCommands() {
+        return List.copyOf(commands);
+    }
+    
+    /**
+     * Finds the commands registered for {@code channel} that were said in {@code result}. Cheap enough to call on the decode thread.
+     *
+     * @return At most one match per command, in the order they were said.
+     */
+    public static List<Match> match(RecognitionResult result, String channel) {
+        if (commands.isEmpty()) return List.of();
+        
+        Compiled current = compiled().get(channel);
+        if (current == null) return List.of();
+        
+        List<PhraseMatcher.Hit<Entry>> hits = current.exact().match(result.text());
+        if (hits.isEmpty()) {
+            // Nothing said exactly; maybe something that sounds like it
+            double threshold = Config.FUZZY_COMMAND_THRESHOLD.get();
+            if (threshold <= 0) return List.of();
+            
+            PhoneticIndex.Match<Entry> fuzzy = current.fuzzy().find(result.text(), threshold);
+            if (fuzzy == null) return List.of();
+            
+            Entry entry = fuzzy.value();
+            return List.of(new Match(entry.command(), new CommandMatch(entry.phrase(), result, channel, fuzzy.startWord(), fuzzy.endWord(), fuzzy.score())));
+        }
+        
+        List<Match> matches = new ArrayList<>(hits.size());
+        Map<VoiceCommand, Boolean> fired = new IdentityHashMap<>();
+        for (PhraseMatcher.Hit<Entry> hit : hits) {
+            Entry entry = hit.value();
+            if (fired.putIfAbsent(entry.command(), Boolean.TRUE) != null) continue;
+            
+            matches.add(new Match(entry.command(), new CommandMatch(entry.phrase(), result, channel, hit.startWord(), hit.endWord(), 1.0)));
+        }
+        return matches;
+    }
+    
+    /**
+     * Finds the phrase registered for {@code channel} that sounds most like part of {@code text}, whether or not it was said exactly.
+     *
+     * @param threshold The lowest acceptable score, between 0 and 1.
+     * @return The best match, or empty if nothing scores at least {@code threshold}.
+     */
+    public static Optional<CommandMatch> findFuzzy(RecognitionResult result, String channel, double threshold) {
+        if (commands.isEmpty()) return Optional.empty();
+        
+        Compiled current = compiled().get(channel);
+        if (current == null) return Optional.empty();
+        
+        PhoneticIndex.Match<Entry> fuzzy = current.fuzzy().find(result.text(), threshold);
+        if (fuzzy == null) return Optional.empty();
+        return Optional.of(new CommandMatch(fuzzy.value().phrase(), result, channel, fuzzy.startWord(), fuzzy.endWord(), fuzzy.score()));
+    }
+    
+    /**
+     * Runs the handlers of {@code matches}. Call on the main thread.
+     */
+    public static void dispatch(List<Match> matches) {
+        for (Match match : matches) {
+            // Unregistered between matching and now
+            if (!commands.contains(match.command())) continue;
+            
+            try {
+                match.command().getHandler().accept(match.match());
+            } catch (Exception e) {
+                logger.error("VoskLib: Voice command \"{}\" failed.", match.match().phrase(), e);
+            }
+        }
+    }
+    
+    private static Map<String, Compiled> compiled() {
+        Map<String, Compiled> current = compiled;
+        if (current != null) return current;
+        
+        synchronized (VoiceCommands.class) {
+            if (compiled != null) return compiled;
+            
+            Map<String, PhraseMatcher.Builder<Entry>> exact = new HashMap<>();
+            Map<String, PhoneticIndex.Builder<Entry>> fuzzy = new HashMap<>();
+            for (VoiceCommand command : commands) {
+                String channel = command.getChannel();
+                for (String phrase : command.getPhrases()) {
+                    Entry entry = new Entry(command, phrase);
+                    exact.computeIfAbsent(channel, c -> new PhraseMatcher.Builder<>()).add(phrase, entry);
+                    fuzzy.computeIfAbsent(channel, c -> new PhoneticIndex.Builder<>()).add(phrase, entry);
+                }
+            }
+            
+            Map<String, Compiled> built = new HashMap<>();
+            exact.forEach((channel, builder) -> built.put(channel, new Compiled(builder.build(), fuzzy.get(channel).build())));
+            current = Map.copyOf(built);
+            compiled = current;
+            return current;
+        }
+    }
+    
+    /**
+     * A command that was said, ready to be {@link #dispatch dispatched}.
+     */
+    public record Match(VoiceCommand command, CommandMatch match) {}
+    
+    private record Entry(VoiceCommand command, String phrase) {}
+    
+    private record Compiled(PhraseMatcher<Entry> exact, PhoneticIndex<Entry> fuzzy) {}
+}
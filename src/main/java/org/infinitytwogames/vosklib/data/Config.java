@@ -1,6 +1,8 @@
 package org.infinitytwogames.vosklib.data;
 
 import net.minecraftforge.common.ForgeConfigSpec;
+import org.infinitytwogames.vosklib.audio.CaptureMode;
+import org.infinitytwogames.vosklib.recognition.MainThreadHandoff;
 import oshi.hardware.platform.unix.solaris.SolarisHWDiskStore;
 
 import java.util.List;
@@ -12,8 +14,26 @@ public class Config {
     // These will hold our actual values
     public static final ForgeConfigSpec.ConfigValue<String> SELECTED_MODEL;
     public static final ForgeConfigSpec.IntValue REFRESH_TIME;
+    public static final ForgeConfigSpec.BooleanValue STREAM_INSTALL;
+    public static final ForgeConfigSpec.IntValue DOWNLOAD_SEGMENTS;
     public static final ForgeConfigSpec.ConfigValue<List<? extends String>> DOWNLOADED_MODELS;
     public static ForgeConfigSpec.BooleanValue SHOW_TRANSCRIPT;
+    public static final ForgeConfigSpec.BooleanValue SHOW_METRICS;
+    public static final ForgeConfigSpec.IntValue RECOGNIZER_CACHE_SIZE;
+    public static final ForgeConfigSpec.IntValue RECOGNIZER_CACHE_MB;
+    public static final ForgeConfigSpec.BooleanValue WARM_UP;
+    public static final ForgeConfigSpec.BooleanValue WORD_DETAILS;
+    public static final ForgeConfigSpec.DoubleValue FUZZY_COMMAND_THRESHOLD;
+    public static final ForgeConfigSpec.EnumValue<CaptureMode> CAPTURE_MODE;
+    public static final ForgeConfigSpec.IntValue CAPTURE_CHUNK_MS;
+    public static final ForgeConfigSpec.BooleanValue NATIVE_CAPTURE;
+    public static final ForgeConfigSpec.EnumValue<MainThreadHandoff.OverflowPolicy> RESULT_OVERFLOW;
+    
+    public static final ForgeConfigSpec.BooleanValue VAD_ENABLED;
+    public static final ForgeConfigSpec.DoubleValue VAD_ENERGY_THRESHOLD;
+    public static final ForgeConfigSpec.DoubleValue VAD_ZCR_THRESHOLD;
+    public static final ForgeConfigSpec.IntValue VAD_HANGOVER_MS;
+    public static final ForgeConfigSpec.IntValue VAD_PREROLL_MS;
     
     static {
         BUILDER.push("VOSK Model Settings");
@@ -33,6 +53,14 @@ public class Config {
                 .defineInRange("days", 36, 0, 356)
         ;
         
+        STREAM_INSTALL = BUILDER
+                .comment("Unpack models while they download instead of saving the zip first. Faster and needs half the disk space. If the connection breaks, the zip is saved to disk instead so the download can resume.")
+                .define("streamInstall", true);
+        
+        DOWNLOAD_SEGMENTS = BUILDER
+                .comment("How many connections download a model at once when it is saved to disk first (streamInstall off, or after a streamed install broke). Helps on slow, far-away connections; 1 uses a single one.")
+                .defineInRange("downloadSegments", 4, 1, 16);
+        
         BUILDER.pop();
         BUILDER.push("VoskLib Settings");
         
@@ -40,6 +68,69 @@ public class Config {
                 .comment("Should the transcribed voice text be displayed?")
                 .define("show_transcript", true);
         
+        SHOW_METRICS = BUILDER
+                .comment("Show recognition performance numbers (real-time factor, latencies, dropped audio) under the transcript.")
+                .define("show_metrics", false);
+        
+        RECOGNIZER_CACHE_SIZE = BUILDER
+                .comment("How many recognizers for recently used grammars are kept ready. 0 rebuilds on every switch.")
+                .defineInRange("recognizer_cache_size", 4, 0, 32);
+        
+        RECOGNIZER_CACHE_MB = BUILDER
+                .comment("Estimated native memory (in MB) the cached recognizers may use before the oldest are freed.")
+                .defineInRange("recognizer_cache_mb", 64, 0, 1024);
+        
+        WARM_UP = BUILDER
+                .comment("Run a short synthetic clip through new recognizers so the first thing you say isn't slower than the rest.")
+                .define("warm_up", true);
+        
+        WORD_DETAILS = BUILDER
+                .comment("Include per-word timings and confidences in results. Mods that need them turn this on by themselves.")
+                .define("word_details", false);
+        
+        FUZZY_COMMAND_THRESHOLD = BUILDER
+                .comment("How closely a misheard phrase has to sound like a voice command to still run it (1 = sounds identical), for example 0.8. 0 (the default) turns this off. Phrases shorter than a few sounds are always matched exactly.")
+                .defineInRange("fuzzy_command_threshold", 0.0, 0.0, 1.0);
+        
+        CAPTURE_MODE = BUILDER
+                .comment("LOW_LATENCY reads the microphone in small chunks so partial results appear sooner. THROUGHPUT reads bigger chunks and uses less CPU.")
+                .defineEnum("capture_mode", CaptureMode.BALANCED);
+        
+        CAPTURE_CHUNK_MS = BUILDER
+                .comment("Overrides the chunk size (in milliseconds) of the capture mode. 0 uses the mode's own size.")
+                .defineInRange("capture_chunk_ms", 0, 0, CaptureMode.MAX_CHUNK_MS);
+        
+        NATIVE_CAPTURE = BUILDER
+                .comment("Open the microphone at its native rate (usually 48 kHz) and convert to 16 kHz ourselves. Turn off if your microphone misbehaves.")
+                .define("native_capture", true);
+        
+        RESULT_OVERFLOW = BUILDER
+                .comment("What happens when the game is frozen long enough for recognized sentences to pile up. Every sentence is kept either way: BLOCK pauses recognition until the game catches up; DROP_PARTIALS keeps recognizing and skips the live partial results the game missed.")
+                .defineEnum("result_overflow", MainThreadHandoff.OverflowPolicy.BLOCK);
+        
+        BUILDER.pop();
+        BUILDER.push("Voice Activity Detection");
+        
+        VAD_ENABLED = BUILDER
+                .comment("Skip silent audio instead of sending it to the recognizer. Saves a lot of CPU while nobody is talking.")
+                .define("enabled", true);
+        
+        VAD_ENERGY_THRESHOLD = BUILDER
+                .comment("Loudness (in dBFS) above which audio counts as speech. Raise it in noisy rooms, lower it for quiet microphones.")
+                .defineInRange("energy_threshold_db", -45.0, -90.0, 0.0);
+        
+        VAD_ZCR_THRESHOLD = BUILDER
+                .comment("Zero-crossing rate above which slightly quieter audio still counts as speech (catches sounds like \"s\" and \"f\").")
+                .defineInRange("zcr_threshold", 0.25, 0.0, 1.0);
+        
+        VAD_HANGOVER_MS = BUILDER
+                .comment("How long (in milliseconds) to keep decoding after speech stops.")
+                .defineInRange("hangover_ms", 800, 0, 5000);
+        
+        VAD_PREROLL_MS = BUILDER
+                .comment("How much audio (in milliseconds) before speech starts is replayed so the first word isn't clipped.")
+                .defineInRange("preroll_ms", 300, 0, 1000);
+        
         BUILDER.pop();
         SPEC = BUILDER.build();
     }
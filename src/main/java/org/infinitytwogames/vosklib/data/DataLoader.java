@@ -13,6 +13,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -21,12 +22,13 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 public class DataLoader {
     private static final Map<String, Path> models = new ConcurrentHashMap<>();
-    private static final Path config = FMLPaths.CONFIGDIR.get().resolve("vosk");
     private static final Logger logger = LogUtils.getLogger();
     
     private static Path selectedPath;
@@ -36,9 +38,25 @@ public class DataLoader {
     public static final AtomicLong downloadedBytes = new AtomicLong(0);
     public static final AtomicLong totalSize = new AtomicLong(0);
     
+    private static final int UNZIP_BUFFER = 64 * 1024;
+    
     public static void unzip(File zipFile, File destDir) throws IOException {
-        byte[] buffer = new byte[1024];
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+        try (InputStream in = new FileInputStream(zipFile)) {
+            unzip(in, destDir.toPath());
+        }
+        zipFile.delete();
+    }
+    
+    /**
+     * Extracts a zip while reading it front to back, so {@code in} can be a download that is still arriving.
+     * Closes {@code in}.
+     */
+    public static void unzip(InputStream in, Path destDir) throws IOException {
+        byte[] buffer = new byte[UNZIP_BUFFER];
+        Path root = destDir.toAbsolutePath().normalize();
+        
+        // ZipInputStream pulls 512 bytes at a time, which is slow straight off a socket
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(in, UNZIP_BUFFER))) {
             ZipEntry entry = zis.getNextEntry();
             while (entry != null) {
                 String fileName = entry.getName();
@@ -52,12 +70,14 @@ public class DataLoader {
                     continue;
                 }
                 
-                File newFile = new File(destDir, flattenedName);
+                Path newFile = root.resolve(flattenedName).normalize();
+                if (!newFile.startsWith(root)) throw new ZipException("Entry outside of the model folder: " + fileName);
+                
                 if (entry.isDirectory()) {
-                    newFile.mkdirs();
+                    Files.createDirectories(newFile);
                 } else {
-                    new File(newFile.getParent()).mkdirs();
-                    try (FileOutputStream fos = new FileOutputStream(newFile)) {
+                    Files.createDirectories(newFile.getParent());
+                    try (OutputStream fos = Files.newOutputStream(newFile)) {
                         int len;
                         while ((len = zis.read(buffer)) > 0) {
                             fos.write(buffer, 0, len);
@@ -67,7 +87,74 @@ public class DataLoader {
                 entry = zis.getNextEntry();
             }
         }
-        zipFile.delete();
+    }
+    
+    /**
+     * Downloads the model zip at {@code url} and extracts it while it downloads, so installing takes about as
+     * long as the download and the zip never touches the disk. Extracts next to {@code modelFolder} first and
+     * only replaces it once the whole model arrived; if it never does, the half-extracted copy is deleted.
+     * <p>
+     * A stream can only start over, so if it breaks the zip is downloaded next to {@code modelFolder} instead,
+     * which later attempts (including after a restart) continue from where they stopped.
+     */
+    public static void install(String url, Path modelFolder) throws Exception {
+        Path staging = modelFolder.resolveSibling(modelFolder.getFileName() + ".partial");
+        Path zipDir = modelFolder.getParent();
+        
+        try {
+            if (FileDownloader.canResume(url, zipDir)) {
+                logger.info("VoskLib: Continuing the interrupted download of {}", url);
+                downloadThenUnzip(url, zipDir, staging);
+            } else {
+                try {
+                    FileDownloader.stream(url, body -> {
+                        deleteRecursively(staging); // Left over from a failed attempt
+                        unzip(body, staging);
+                    }, 1);
+                } catch (ZipException | InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.warn("VoskLib: Streaming {} failed ({}), downloading it first instead", url, e.getMessage());
+                    downloadThenUnzip(url, zipDir, staging);
+                }
+            }
+        } catch (Exception e) {
+            try {
+                deleteRecursively(staging);
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+        
+        deleteRecursively(modelFolder);
+        Files.move(staging, modelFolder, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static void downloadThenUnzip(String url, Path zipDir, Path staging) throws Exception {
+        FileDownloader.DownloadTask task = FileDownloader.createTask(url, zipDir, false, null);
+        FileDownloader.download(task);
+        
+        deleteRecursively(staging);
+        try {
+            unzip(task.target().toFile(), staging.toFile());
+        } catch (ZipException e) {
+            Files.deleteIfExists(task.target()); // Otherwise its size matches and it would be used again
+            throw e;
+        }
+    }
+    
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+    
+    // Resolved on use rather than in the static initializer, so unzip() and the manifest parsing also work outside the game
+    private static Path configDir() {
+        return FMLPaths.CONFIGDIR.get().resolve("vosk");
     }
     
     public static void register(String version, Path model) {
@@ -78,18 +165,23 @@ public class DataLoader {
         new Thread(() -> {
             try {
                 // 1. Setup paths
-                Path modelFolder = config.resolve(modelType.toLowerCase());
+                Path modelFolder = configDir().resolve(modelType.toLowerCase());
                 
                 // 2. Prepare the downloader (Resets bytes and starts speed timer)
                 FileDownloader.prepareForDownload();
+                FileDownloader.setSegments(Config.DOWNLOAD_SEGMENTS.get());
                 
-                FileDownloader.DownloadTask task = FileDownloader.createTask(url, config, false, null);
-                
-                FileDownloader.processTask(task, new CountDownLatch(1));
-                Path targetZip = task.target();
-                
-                // 4. Unzip and register
-                unzip(targetZip.toFile(), modelFolder.toFile());
+                if (Config.STREAM_INSTALL.get()) {
+                    install(url, modelFolder);
+                } else {
+                    FileDownloader.DownloadTask task = FileDownloader.createTask(url, configDir(), false, null);
+                    
+                    FileDownloader.processTask(task, new CountDownLatch(1));
+                    Path targetZip = task.target();
+                    
+                    // 4. Unzip and register
+                    unzip(targetZip.toFile(), modelFolder.toFile());
+                }
                 
                 register(modelType, modelFolder);
                 
@@ -101,6 +193,7 @@ public class DataLoader {
                 System.out.println("Download complete: " + modelType);
             } catch (Exception e) {
                 logger.error("Failed to download file \"{}\"", url, e);
+                FileDownloader.stopTracking();
                 onFailure.run();
             }
         }).start();
@@ -143,7 +236,7 @@ public class DataLoader {
         refresh = Config.REFRESH_TIME.get();
         
         for (String name : downloaded) {
-            Path modelFolderPath = config.resolve(name);
+            Path modelFolderPath = configDir().resolve(name);
             if (modelFolderPath.toFile().exists()) {
                 register(name, modelFolderPath);
                 validModels.add(name);
@@ -201,7 +294,7 @@ public class DataLoader {
                 }
                 
                 // 2. Save to manifest file
-                Path file = config.resolve("manifest.json");
+                Path file = configDir().resolve("manifest.json");
                 Files.writeString(file, jsonContent);
                 
                 // 3. Parse the JSON from the String we already have
@@ -219,7 +312,7 @@ public class DataLoader {
         });
     }
     
-    private static @NotNull List<VoskModel> getVoskModels(JsonArray array) {
+    static @NotNull List<VoskModel> getVoskModels(JsonArray array) {
         List<VoskModel> models = new ArrayList<>();
         
         for (JsonElement element : array) {
@@ -245,7 +338,7 @@ public class DataLoader {
     }
     
     public static void getOnlineModels(Consumer<List<VoskModel>> callback, Consumer<Throwable> onFailure) {
-        Path file = config.resolve("manifest.json");
+        Path file = configDir().resolve("manifest.json");
         
         if (Files.exists(file)) {
             try {
@@ -4,6 +4,8 @@ import org.infinitytwogames.vosklib.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
@@ -13,6 +15,7 @@ import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipException;
 
 public class FileDownloader {
     private static final Logger logger = LoggerFactory.getLogger(FileDownloader.class);
@@ -20,6 +23,11 @@ public class FileDownloader {
     public static double currentSpeedBps = 0;
     private static long lastBytes = 0;
     private static final double SPEED_ALPHA = 0.2;
+    private static final int MAX_FAILURES = 5;
+    
+    // Smaller files aren't worth the extra connections
+    private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+    private static volatile int segments = 4;
     
     private static final HttpClient http = HttpClient.newBuilder()
             .followRedirects(HttpClient.Redirect.NORMAL)
@@ -86,8 +94,13 @@ public class FileDownloader {
         
         long size = -1;
         String fileName = null;
+        boolean acceptsRanges = false;
+        String validator = null;
         
         if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            acceptsRanges = acceptsRanges(response);
+            validator = validator(response);
+            
             // Size
             size = response.headers()
                     .firstValue("Content-Length")
@@ -103,7 +116,7 @@ public class FileDownloader {
         
         // Fallbacks
         if (fileName == null) {
-            fileName = Path.of(URI.create(url).getPath()).getFileName().toString();
+            fileName = fileNameOf(url);
         }
         
         if (size <= 0) {
@@ -119,11 +132,33 @@ public class FileDownloader {
                     .firstValue("Content-Length")
                     .map(Long::parseLong)
                     .orElse(-1L);
+            acceptsRanges = acceptsRanges(getResp);
+            validator = validator(getResp);
             
             getResp.body().close();
         }
         
-        return new RemoteFileInfo(size, fileName);
+        return new RemoteFileInfo(size, fileName, acceptsRanges, validator);
+    }
+    
+    // What If-Range can compare against: a strong ETag, or else the modification date
+    private static String validator(HttpResponse<?> response) {
+        return response.headers()
+                .firstValue("ETag")
+                .filter(tag -> !tag.startsWith("W/"))
+                .or(() -> response.headers().firstValue("Last-Modified"))
+                .orElse(null);
+    }
+    
+    private static boolean acceptsRanges(HttpResponse<?> response) {
+        return response.headers()
+                .firstValue("Accept-Ranges")
+                .map(value -> value.trim().equalsIgnoreCase("bytes"))
+                .orElse(false);
+    }
+    
+    private static String fileNameOf(String url) {
+        return Path.of(URI.create(url).getPath()).getFileName().toString();
     }
     
     private static String parseFileName(String disposition) {
@@ -149,79 +184,126 @@ public class FileDownloader {
             DataLoader.totalSize.addAndGet(size);
         }
         
-        return new DownloadTask(url, target, size, isNative, nativesDir);
+        return new DownloadTask(url, target, size, isNative, nativesDir, info.acceptsRanges(), info.validator());
     }
     
     public static void processTask(DownloadTask task, CountDownLatch latch) {
-        String fileName = task.target().getFileName().toString();
         try {
-            // 1. Validation check
-            if (Files.exists(task.target())) {
-                long size = Files.size(task.target());
-                if (task.expectedSize() > 0 && size == task.expectedSize()) {
-                    if (task.isNative()) extractNatives(task.target(), task.nativesDir());
-                    return;
-                }
-                
-                logger.warn("Size mismatch for {}: expected {} but found {}. Deleting...", fileName, task.expectedSize(), size);
-                Files.delete(task.target());
-            }
-            
-            // 2. Download
-            downloadWithRetry(task, 3);
-            
-            // 3. Post-process
-            if (task.isNative()) {
-                extractNatives(task.target(), task.nativesDir());
-            }
-            
+            download(task);
         } catch (Exception e) {
-            logger.error("Failed to process task for {}: {}", fileName, e.getMessage());
+            logger.error("Failed to process task for {}: {}", task.target().getFileName(), e.getMessage());
         } finally {
             if (latch != null) latch.countDown();
         }
     }
     
+    /**
+     * Like {@link #processTask}, but throws if the download fails instead of logging it.
+     */
+    public static void download(DownloadTask task) throws Exception {
+        String fileName = task.target().getFileName().toString();
+        
+        // 1. Validation check
+        if (Files.exists(task.target())) {
+            long size = Files.size(task.target());
+            if (task.expectedSize() > 0 && size == task.expectedSize()) {
+                if (task.isNative()) extractNatives(task.target(), task.nativesDir());
+                return;
+            }
+            
+            logger.warn("Size mismatch for {}: expected {} but found {}. Deleting...", fileName, task.expectedSize(), size);
+            Files.delete(task.target());
+        }
+        
+        // 2. Download, continuing where an earlier attempt stopped
+        new ResumableDownload(http, task, MAX_FAILURES).run(segmentsFor(task));
+        
+        // 3. Post-process
+        if (task.isNative()) {
+            extractNatives(task.target(), task.nativesDir());
+        }
+    }
+    
+    /**
+     * Whether an earlier download of {@code url} into {@code dir} stopped part way and can be continued.
+     * Goes by the file name in the URL, so it doesn't need a request.
+     */
+    public static boolean canResume(String url, Path dir) {
+        return ResumableDownload.hasState(dir.resolve(fileNameOf(url)));
+    }
+    
     public static void downloadFileSync(String url, Path target) {
-        DownloadTask task = new DownloadTask(url, target, -1, false, null);
+        DownloadTask task = new DownloadTask(url, target, -1, false, null, false, null);
         FileDownloader.processTask(task, null);
     }
     
-    private static void downloadWithRetry(DownloadTask task, int max) throws Exception {
+    /**
+     * How many connections a single download may use. Only servers that accept Range requests get more than one.
+     */
+    public static void setSegments(int count) {
+        segments = Math.max(1, count);
+    }
+    
+    private static int segmentsFor(DownloadTask task) {
+        if (!task.acceptsRanges() || task.expectedSize() <= 0) return 1;
+        return (int) Math.max(1, Math.min(segments, task.expectedSize() / MIN_SEGMENT_BYTES));
+    }
+    
+    /**
+     * Downloads {@code url} straight into {@code sink} instead of a file, counting progress as the body is read.
+     * A failed attempt is retried from the start, so {@code sink} must be able to begin again. If the last
+     * attempt fails, the progress it added is taken back.
+     *
+     * @param sink Reads the body; whatever it leaves unread is drained so progress ends at the full size.
+     */
+    public static void stream(String url, BodySink sink, int max) throws Exception {
         int attempt = 0;
-        String fileName = task.target().getFileName().toString();
+        long announced = 0;
         
         while (attempt < max) {
             attempt++;
+            ProgressInputStream in = null;
             try {
-                Files.createDirectories(task.target().getParent());
-                HttpRequest request = HttpRequest.newBuilder().uri(URI.create(task.url())).GET().build();
+                HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
                 
-                if (attempt > 1) logger.info("Retrying download {} (Attempt {}/{})", fileName, attempt, max);
-                else logger.info("Starting download: {}", fileName);
+                if (attempt > 1) logger.info("Retrying stream {} (Attempt {}/{})", url, attempt, max);
+                else logger.info("Starting stream: {}", url);
                 
                 HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
                 
                 if (response.statusCode() != 200) {
+                    response.body().close();
                     throw new RuntimeException("Server returned HTTP " + response.statusCode());
                 }
                 
-                try (InputStream in = response.body(); OutputStream out = Files.newOutputStream(task.target())) {
-                    byte[] buffer = new byte[8192];
-                    int read;
-                    while ((read = in.read(buffer)) != -1) {
-                        out.write(buffer, 0, read);
-                        DataLoader.downloadedBytes.addAndGet(read);
-                    }
+                // The GET already says how big it is, so there's no need for a HEAD first
+                long size = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                if (announced == 0 && size > 0) {
+                    DataLoader.totalSize.addAndGet(size);
+                    announced = size;
+                }
+                
+                try (InputStream body = response.body()) {
+                    in = new ProgressInputStream(body);
+                    sink.accept(in);
+                    in.transferTo(OutputStream.nullOutputStream());
                 }
-                logger.info("Successfully downloaded: {}", fileName);
+                logger.info("Successfully streamed: {}", url);
                 return;
+            } catch (ZipException e) {
+                // A broken archive won't get better by downloading it again
+                if (in != null) DataLoader.downloadedBytes.addAndGet(-in.counted);
+                DataLoader.totalSize.addAndGet(-announced);
+                throw e;
             } catch (Exception e) {
-                logger.warn("Attempt {} failed for {}: {}", attempt, fileName, e.getMessage());
+                if (in != null) DataLoader.downloadedBytes.addAndGet(-in.counted);
+                logger.warn("Attempt {} failed for {}: {}", attempt, url, e.getMessage());
                 if (attempt >= max) {
-                    logger.error("Maximum retries reached for {}", fileName);
+                    logger.error("Maximum retries reached for {}", url);
+                    DataLoader.totalSize.addAndGet(-announced);
                     throw e;
                 }
+                Thread.sleep(ResumableDownload.backoffMillis(attempt));
             }
         }
     }
@@ -251,16 +333,60 @@ public class FileDownloader {
     
     public static Interval getSpeedTimer() { return speedTimer; }
     
+    /**
+     * Consumes a response body as it arrives, see {@link #stream}.
+     */
+    @FunctionalInterface
+    public interface BodySink {
+        void accept(InputStream body) throws IOException;
+    }
+    
+    // Counts what the sink reads towards the download progress. Closing it is left to stream(), after the drain
+    private static class ProgressInputStream extends FilterInputStream {
+        private long counted = 0;
+        
+        ProgressInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count(1);
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count(read);
+            return read;
+        }
+        
+        @Override
+        public void close() {
+        }
+        
+        private void count(int bytes) {
+            counted += bytes;
+            DataLoader.downloadedBytes.addAndGet(bytes);
+        }
+    }
+    
     public record DownloadTask(
             String url,
             Path target,
             long expectedSize,
             boolean isNative,
-            Path nativesDir
+            Path nativesDir,
+            boolean acceptsRanges,
+            String validator
     ) {}
     
     public record RemoteFileInfo(
             long size,
-            String fileName
+            String fileName,
+            boolean acceptsRanges,
+            String validator
     ) {}
 }
\ No newline at end of file
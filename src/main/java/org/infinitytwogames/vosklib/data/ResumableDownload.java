@@ -0,0 +1,426 @@
+package org.infinitytwogames.vosklib.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One download into a {@code .part} file that survives lost connections and game restarts.
+ * <p>
+ * The file is fetched as one or more byte ranges. A small {@code .part.json} sidecar records how far
+ * each range got, counting only bytes already forced to disk, and the next attempt continues from there
+ * with {@code Range: bytes=N-}. The sidecar also keeps the server's ETag (or Last-Modified date), which
+ * goes back as {@code If-Range}: if the file changed on the server in the meantime, it answers with the
+ * whole new file and the download starts over instead of mixing two versions.
+ */
+class ResumableDownload {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableDownload.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CHECKPOINT_BYTES = 8L * 1024 * 1024;
+    private static final long BASE_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    
+    // The end of a range whose size the server didn't tell
+    private static final long OPEN = Long.MAX_VALUE;
+    
+    private final HttpClient http;
+    private final FileDownloader.DownloadTask task;
+    private final String fileName;
+    private final Path part;
+    private final Path state;
+    private final int maxFailures;
+    private final AtomicLong sinceCheckpoint = new AtomicLong();
+    
+    private volatile List<Segment> segments;
+    private FileChannel channel;
+    
+    // Released when one segment gave up, so the others stop at their next read or backoff. They are never
+    // interrupted: an interrupt during FileChannel.write closes the channel for every segment
+    private volatile CountDownLatch cancelled = new CountDownLatch(1);
+    
+    // Requests and bodies still open, closed on cancel so nobody stays blocked on the network
+    private final Set<Closeable> inFlight = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * @param maxFailures How many attempts in a row may fail without getting any further before giving up.
+     */
+    ResumableDownload(HttpClient http, FileDownloader.DownloadTask task, int maxFailures) {
+        this.http = http;
+        this.task = task;
+        this.fileName = task.target().getFileName().toString();
+        this.part = task.target().resolveSibling(fileName + ".part");
+        this.state = task.target().resolveSibling(fileName + ".part.json");
+        this.maxFailures = maxFailures;
+    }
+    
+    /**
+     * Downloads the file over up to {@code connections} ranges at once, continuing an earlier attempt if
+     * its sidecar still matches, and moves it to the task's target once complete.
+     */
+    void run(int connections) throws Exception {
+        Files.createDirectories(part.getParent());
+        
+        segments = resume();
+        if (segments == null) {
+            Files.deleteIfExists(part);
+            segments = plan(connections);
+            logger.info("Starting download: {} ({} connections)", fileName, segments.size());
+        }
+        
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            this.channel = channel;
+            try {
+                try {
+                    fetchAll();
+                } catch (RangeIgnoredException e) {
+                    logger.warn("{} for {}, starting over on a single connection.", e.getMessage(), fileName);
+                    DataLoader.downloadedBytes.addAndGet(-done(segments));
+                    channel.truncate(0);
+                    segments = List.of(new Segment(0, 0, task.expectedSize() > 0 ? task.expectedSize() - 1 : OPEN));
+                    checkpoint();
+                    fetchAll();
+                }
+            } catch (Exception e) {
+                try {
+                    checkpoint(); // Whatever arrived is kept for the next attempt
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+        
+        long size = Files.size(part);
+        if (task.expectedSize() > 0 && size != task.expectedSize()) {
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(state);
+            throw new IOException("Expected " + task.expectedSize() + " bytes but got " + size);
+        }
+        
+        Files.move(part, task.target(), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(state);
+        logger.info("Successfully downloaded: {}", fileName);
+    }
+    
+    /**
+     * Whether a download into {@code target} stopped part way and left a sidecar to continue from.
+     */
+    static boolean hasState(Path target) {
+        String name = target.getFileName().toString();
+        return Files.exists(target.resolveSibling(name + ".part.json")) && Files.exists(target.resolveSibling(name + ".part"));
+    }
+    
+    /**
+     * How long to wait before the {@code failures}th retry in a row: doubling from a second up to
+     * half a minute, with some jitter so many clients don't come back at once.
+     */
+    static long backoffMillis(int failures) {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(failures - 1, 16));
+        return delay + ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+    }
+    
+    private List<Segment> plan(int connections) {
+        long size = task.expectedSize();
+        if (connections <= 1 || size <= 0) return List.of(new Segment(0, 0, size > 0 ? size - 1 : OPEN));
+        
+        List<Segment> planned = new ArrayList<>();
+        long segmentSize = (size + connections - 1) / connections;
+        for (long start = 0; start < size; start += segmentSize) {
+            planned.add(new Segment(start, start, Math.min(size, start + segmentSize) - 1));
+        }
+        return planned;
+    }
+    
+    private List<Segment> resume() {
+        // Without a size there's nothing to check a resumed file against
+        if (task.expectedSize() <= 0 || !Files.exists(state) || !Files.exists(part)) return null;
+        
+        try {
+            JsonObject json = JsonParser.parseString(Files.readString(state, StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonElement validator = json.get("validator");
+            
+            if (!json.get("url").getAsString().equals(task.url())
+                    || json.get("size").getAsLong() != task.expectedSize()
+                    || !Objects.equals(validator == null ? null : validator.getAsString(), task.validator())) {
+                logger.info("{} changed on the server since the last attempt, starting over.", fileName);
+                return null;
+            }
+            
+            List<Segment> resumed = new ArrayList<>();
+            for (JsonElement element : json.getAsJsonArray("segments")) {
+                JsonArray range = element.getAsJsonArray();
+                resumed.add(new Segment(range.get(0).getAsLong(), range.get(1).getAsLong(), range.get(2).getAsLong()));
+            }
+            
+            long done = done(resumed);
+            DataLoader.downloadedBytes.addAndGet(done);
+            logger.info("Resuming download: {} at {} of {} bytes", fileName, done, task.expectedSize());
+            return resumed;
+        } catch (Exception e) {
+            logger.warn("Ignoring unreadable download state {}: {}", state.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+    
+    private void fetchAll() throws Exception {
+        cancelled = new CountDownLatch(1);
+        List<Segment> pending = segments.stream().filter(segment -> !segment.isDone()).toList();
+        if (pending.size() == 1) {
+            fetchWithRetry(pending.get(0));
+            return;
+        }
+        
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, pending.size()), r -> {
+            Thread thread = new Thread(r, "VoskLib-Download-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            // Taken in the order they finish, so the first segment to give up stops the rest right away
+            CompletionService<Void> finished = new ExecutorCompletionService<>(pool);
+            for (Segment segment : pending) {
+                finished.submit(() -> {
+                    fetchWithRetry(segment);
+                    return null;
+                });
+            }
+            
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    finished.take().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        } finally {
+            // Stops the other segments once one gave up, and waits for them before the file is touched again
+            cancel();
+            pool.shutdown();
+            awaitTermination(pool);
+        }
+    }
+    
+    private void cancel() {
+        cancelled.countDown();
+        for (Closeable closeable : inFlight) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // Only needs to stop blocking
+            }
+        }
+    }
+    
+    private boolean isCancelled() {
+        return cancelled.getCount() == 0;
+    }
+    
+    private static void awaitTermination(ExecutorService pool) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.SECONDS)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+    
+    private void fetchWithRetry(Segment segment) throws Exception {
+        int failures = 0;
+        while (true) {
+            long before = segment.next;
+            try {
+                fetch(segment);
+                return;
+            } catch (IOException e) {
+                if (isCancelled() || Thread.currentThread().isInterrupted()) throw e;
+                
+                // Getting somewhere means a flaky connection rather than a dead one, so it may keep trying
+                if (segment.next > before) failures = 0;
+                if (++failures >= maxFailures) {
+                    logger.error("Maximum retries reached for {}", fileName);
+                    throw e;
+                }
+                
+                long delay = backoffMillis(failures);
+                logger.warn("Download of {} stopped at byte {} ({}), retrying in {} ms (Attempt {}/{})",
+                        fileName, segment.next, e.getMessage(), delay, failures + 1, maxFailures);
+                checkpoint();
+                if (cancelled.await(delay, TimeUnit.MILLISECONDS)) throw e;
+            }
+        }
+    }
+    
+    private void fetch(Segment segment) throws Exception {
+        if (segment.isDone()) return;
+        
+        boolean ranged = segment.next > 0 || segments.size() > 1;
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create(task.url())).GET();
+        if (ranged) {
+            request.header("Range", "bytes=" + segment.next + "-" + (segment.end == OPEN ? "" : segment.end));
+            if (task.validator() != null) request.header("If-Range", task.validator());
+        }
+        
+        HttpResponse<InputStream> response = send(request.build());
+        
+        try (InputStream in = response.body()) {
+            inFlight.add(in);
+            if (isCancelled()) throw new InterruptedIOException("Cancelled");
+            
+            int status = response.statusCode();
+            if (ranged && (status == 200 || status == 416 || status == 206 && !startsAt(response, segment.next))) {
+                // The file changed since the last attempt, or the server won't resume
+                if (segments.size() > 1) throw new RangeIgnoredException("Server didn't send the requested range");
+                
+                // A single range always starts at 0, so it can simply begin again
+                DataLoader.downloadedBytes.addAndGet(-segment.next);
+                channel.truncate(0);
+                segment.next = 0;
+                checkpoint();
+                if (status != 200) throw new IOException("Server couldn't resume (HTTP " + status + ")");
+                // Otherwise this is the whole file again
+            } else if (status != (ranged ? 206 : 200)) {
+                // Worth retrying only if the server is busy or broken for now
+                if (status >= 500 || status == 408 || status == 429) throw new IOException("Server returned HTTP " + status);
+                throw new RuntimeException("Server returned HTTP " + status);
+            }
+            
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (!segment.isDone() && !isCancelled() && (read = in.read(buffer, 0, (int) Math.min(buffer.length - 1, segment.end - segment.next) + 1)) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                long position = segment.next;
+                while (chunk.hasRemaining()) position += channel.write(chunk, position);
+                
+                segment.next = position;
+                DataLoader.downloadedBytes.addAndGet(read);
+                if (sinceCheckpoint.addAndGet(read) >= CHECKPOINT_BYTES) checkpoint();
+            }
+            if (isCancelled()) throw new InterruptedIOException("Cancelled");
+        } finally {
+            inFlight.remove(response.body());
+        }
+        
+        if (segment.end == OPEN) {
+            segment.end = segment.next - 1; // The end of the body is the end of the file
+        } else if (!segment.isDone()) {
+            throw new IOException("Connection closed " + (segment.end - segment.next + 1) + " bytes early");
+        }
+    }
+    
+    // Sent asynchronously so a cancel doesn't have to wait for the server to answer
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        CompletableFuture<HttpResponse<InputStream>> response = http.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        Closeable abort = () -> response.cancel(true);
+        inFlight.add(abort);
+        try {
+            if (isCancelled()) response.cancel(true);
+            return response.join();
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Cancelled");
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        } finally {
+            inFlight.remove(abort);
+        }
+    }
+    
+    private static boolean startsAt(HttpResponse<?> response, long position) {
+        return response.headers()
+                .firstValue("Content-Range")
+                .map(range -> range.trim().startsWith("bytes " + position + "-"))
+                .orElse(true);
+    }
+    
+    /**
+     * Forces what was written to disk and then records it in the sidecar, so the sidecar never claims
+     * bytes a crash could still lose.
+     */
+    private synchronized void checkpoint() throws IOException {
+        sinceCheckpoint.set(0);
+        if (task.expectedSize() <= 0 || !channel.isOpen()) return;
+        
+        // Read before forcing: everything written up to here is covered
+        JsonArray ranges = new JsonArray();
+        for (Segment segment : segments) {
+            JsonArray range = new JsonArray();
+            range.add(segment.start);
+            range.add(segment.next);
+            range.add(segment.end);
+            ranges.add(range);
+        }
+        channel.force(false);
+        
+        JsonObject json = new JsonObject();
+        json.addProperty("url", task.url());
+        json.addProperty("size", task.expectedSize());
+        json.addProperty("validator", task.validator());
+        json.add("segments", ranges);
+        
+        Path temporary = state.resolveSibling(state.getFileName() + ".tmp");
+        Files.writeString(temporary, json.toString(), StandardCharsets.UTF_8);
+        Files.move(temporary, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static long done(List<Segment> segments) {
+        long done = 0;
+        for (Segment segment : segments) done += segment.next - segment.start;
+        return done;
+    }
+    
+    // A byte range of the file; next moves up to end (inclusive) as bytes are written
+    private static final class Segment {
+        final long start;
+        volatile long next;
+        volatile long end;
+        
+        Segment(long start, long next, long end) {
+            this.start = start;
+            this.next = next;
+            this.end = end;
+        }
+        
+        boolean isDone() {
+            return end != OPEN && next > end;
+        }
+    }
+    
+    // Not an IOException, so it isn't retried: asking again won't make the server send ranges
+    private static class RangeIgnoredException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        RangeIgnoredException(String message) {
+            super(message);
+        }
+    }
+}
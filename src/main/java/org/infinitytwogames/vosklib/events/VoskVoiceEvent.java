@@ -2,28 +2,70 @@ package org.infinitytwogames.vosklib.events;
 
 import net.minecraftforge.eventbus.api.Cancelable;
 import net.minecraftforge.eventbus.api.Event;
+import org.infinitytwogames.vosklib.recognition.RecognitionResult;
 
 @Cancelable
 public class VoskVoiceEvent extends Event {
     private final String result;
+    private final String channel;
     
     public VoskVoiceEvent(String result) {
+        this(result, "default");
+    }
+    
+    public VoskVoiceEvent(String result, String channel) {
         this.result = result;
+        this.channel = channel;
     }
     
     public String getText() {
         return result;
     }
     
-    // Fired when the user is currently speaking
+    // The id of the recognition channel that produced this, "default" unless a mod added its own
+    public String getChannel() {
+        return channel;
+    }
+    
+    // Fired when the user is currently speaking, at most once per client tick
     @Cancelable
     public static class Partial extends VoskVoiceEvent {
-        public Partial(String result) { super(result); }
+        private final String delta;
+        
+        public Partial(String result) { this(result, result); }
+        
+        public Partial(String result, String delta) {
+            this(result, delta, "default");
+        }
+        
+        public Partial(String result, String delta, String channel) {
+            super(result, channel);
+            this.delta = delta;
+        }
+        
+        // Only the words added since the previous partial, or the whole text if the recognizer revised it
+        public String getDelta() {
+            return delta;
+        }
     }
     
     // Fired when a full sentence is recognized
     @Cancelable
     public static class Result extends VoskVoiceEvent {
-        public Result(String result) { super(result); }
+        private final RecognitionResult details;
+        
+        public Result(String result) { this(result, "default"); }
+        
+        public Result(String result, String channel) { this(RecognitionResult.of(result), channel); }
+        
+        public Result(RecognitionResult details, String channel) {
+            super(details.text(), channel);
+            this.details = details;
+        }
+        
+        // Parsed once for all listeners; has word timings and confidences if VoskManager.setWordDetails(true) was called
+        public RecognitionResult getDetails() {
+            return details;
+        }
     }
 }
@@ -0,0 +1,84 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.infinitytwogames.vosklib.audio.PcmFile;
+import org.infinitytwogames.vosklib.audio.Resampler;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transcribes recorded WAV or raw PCM files with the loaded model.
+ * <p>
+ * Files are memory-mapped rather than read into the heap, so a long recording costs address space
+ * instead of a multi-hundred-megabyte array, and each gets its own recognizer so several can be
+ * decoded in parallel against the same {@link Model}. Raw {@code .pcm}/{@code .raw} files are
+ * assumed to be 16 kHz, 16-bit little-endian mono; WAV files may use any rate and channel count.
+ */
+public class BatchTranscriber {
+    private static final int TARGET_SAMPLE_RATE = 16000;
+    
+    // Bigger than the live chunks: there's no latency to care about, only native call overhead
+    private static final int CHUNK_SIZE = 32 * 1024;
+    
+    // Mapped a window at a time, so files past 2 GB work too
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    
+    private BatchTranscriber() {}
+    
+    /**
+     * Decodes {@code file} from start to end on the calling thread. Never throws; failures are reported in the result.
+     */
+    public static Transcription transcribe(Model model, Path file) {
+        long start = System.nanoTime();
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PcmFile.Layout layout = PcmFile.readLayout(channel, file);
+            
+            // Vosk resamples mono input itself; anything else goes through our resampler first
+            boolean convert = layout.channels() != 1 || layout.bigEndian();
+            int frameSize = layout.frameSize();
+            int chunk = CHUNK_SIZE / frameSize * frameSize;
+            
+            Resampler resampler = convert ? new Resampler(layout.sampleRate(), TARGET_SAMPLE_RATE, layout.channels(), layout.bigEndian(), chunk / frameSize) : null;
+            byte[] in = new byte[chunk];
+            byte[] out = convert ? new byte[resampler.maxOutputBytes(chunk)] : in;
+            
+            List<String> segments = new ArrayList<>();
+            VoskResult result = new VoskResult(VoskResult.Kind.FINAL);
+            
+            try (Recognizer recognizer = new Recognizer(model, convert ? TARGET_SAMPLE_RATE : layout.sampleRate())) {
+                long end = layout.offset() + layout.length() / frameSize * frameSize;
+                long windowSize = MAP_WINDOW / frameSize * frameSize; // Frames never straddle two windows
+                for (long window = layout.offset(); window < end; window += windowSize) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, window, Math.min(windowSize, end - window));
+                    
+                    while (mapped.hasRemaining()) {
+                        int len = Math.min(in.length, mapped.remaining());
+                        mapped.get(in, 0, len);
+                        
+                        int n = convert ? resampler.process(in, 0, len, out, 0) : len;
+                        if (recognizer.acceptWaveForm(out, n)) collect(recognizer.getResult(), result, segments);
+                    }
+                }
+                collect(recognizer.getFinalResult(), result, segments);
+            }
+            
+            long audioNanos = layout.length() / frameSize * 1_000_000_000L / layout.sampleRate();
+            return new Transcription(file, List.copyOf(segments), audioNanos, System.nanoTime() - start, null);
+            
+        } catch (IOException | IllegalArgumentException e) {
+            return Transcription.failed(file, System.nanoTime() - start, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+    
+    private static void collect(String json, VoskResult into, List<String> segments) {
+        if (ResultExtractor.extract(json, into) && !into.isEmpty()) segments.add(into.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue for handing work from decode threads to the client thread.
+ * <p>
+ * Each slot carries a sequence number telling whether it is free for the producer of a given
+ * position or full for its consumer, so any number of threads can offer and poll with one CAS
+ * each and nothing is allocated after construction. When full, {@link #offer} fails instead of
+ * growing; what to do then is up to the caller.
+ */
+public class HandoffQueue<T> {
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+    
+    /**
+     * @param capacity Rounded up to a power of two.
+     */
+    public HandoffQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+    
+    /**
+     * @return {@code false} if the queue is full.
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long position = enqueuePosition.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    sequences.lazySet(index, position + 1); // Publishes the item to the consumer
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // The consumer hasn't freed this slot yet
+            }
+        }
+    }
+    
+    /**
+     * @return The oldest item, or {@code null} if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        while (true) {
+            long position = dequeuePosition.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    T item = (T) items[index];
+                    items[index] = null;
+                    sequences.lazySet(index, position + mask + 1); // Free for the producer one lap later
+                    return item;
+                }
+            } else if (difference < 0) {
+                return null; // The producer hasn't published this slot yet
+            }
+        }
+    }
+    
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, items.length));
+    }
+    
+    public int capacity() {
+        return items.length;
+    }
+}
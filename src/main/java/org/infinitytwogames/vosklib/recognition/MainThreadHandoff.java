@@ -0,0 +1,127 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Carries final results from the decode threads to the client thread.
+ * <p>
+ * Partials don't go through here: each channel's {@link PartialCoalescer} keeps only the newest
+ * one, which already drops the oldest. Finals go into a bounded {@link HandoffQueue} that the
+ * client thread {@link #drain drains} once per tick. A final is never lost: when the game hitches
+ * long enough to fill the queue, the {@link OverflowPolicy} only decides whether the decode thread
+ * waits for room (and so stops producing partials too) or keeps recognizing, with the finals that
+ * don't fit waiting in an unbounded overflow list behind the queue. Finals are a few dozen bytes
+ * and only pile up while the client thread is frozen, so the list stays small.
+ */
+public class MainThreadHandoff {
+    private static final Logger logger = LogUtils.getLogger();
+    private static final long BACKOFF_NANOS = 1_000_000L;
+    
+    private final HandoffQueue<Runnable> finals;
+    
+    // Once anything is here, every new final follows it, so a channel's finals stay in order
+    private final ConcurrentLinkedQueue<Runnable> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    
+    public MainThreadHandoff(int capacity) {
+        this.finals = new HandoffQueue<>(capacity);
+    }
+    
+    /**
+     * Queues {@code task} for the client thread. Called from a decode thread, never while holding a lock
+     * the client thread might wait for.
+     *
+     * @param running Checked while waiting for room; once it turns false the task goes to the overflow list
+     *                instead, since the decode thread has to stop.
+     */
+    public void submit(Runnable task, OverflowPolicy policy, BooleanSupplier running) {
+        if (overflow.isEmpty() && finals.offer(task)) return;
+        
+        if (policy == OverflowPolicy.BLOCK && overflow.isEmpty()) {
+            // Backpressure: the decode thread falls behind, and the audio ring buffer absorbs the delay
+            stalls.incrementAndGet();
+            while (running.getAsBoolean() && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(BACKOFF_NANOS);
+                if (finals.offer(task)) return;
+            }
+        }
+        
+        overflow.add(task);
+        overflowed.incrementAndGet();
+    }
+    
+    /**
+     * Runs the queued tasks, then the overflow list. Called from the client thread; only runs what was
+     * queued when it started, so a busy decode thread can't keep it here.
+     *
+     * @return How many tasks ran.
+     */
+    public int drain() {
+        int count = finals.size();
+        int spilled = overflow.size();
+        int ran = 0;
+        for (int i = 0; i < count; i++) {
+            Runnable task = finals.poll();
+            if (task == null) break;
+            run(task);
+            ran++;
+        }
+        for (int i = 0; i < spilled; i++) {
+            Runnable task = overflow.poll();
+            if (task == null) break;
+            run(task);
+            ran++;
+        }
+        return ran;
+    }
+    
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error("VoskLib: Failed to deliver a result.", e);
+        }
+    }
+    
+    /**
+     * @return The queued tasks, including those in the overflow list.
+     */
+    public int getDepth() {
+        return finals.size() + overflow.size();
+    }
+    
+    public int getCapacity() {
+        return finals.capacity();
+    }
+    
+    /**
+     * How many finals found the queue full and went to the overflow list.
+     */
+    public long getOverflowed() {
+        return overflowed.get();
+    }
+    
+    /**
+     * How many finals found the queue full and had to wait for the client thread.
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+    
+    /**
+     * What to do when the client thread is too far behind to take another final result. Finals are kept either way.
+     */
+    public enum OverflowPolicy {
+        /** The decode thread waits for room, pausing recognition, so not even a partial is skipped. */
+        BLOCK,
+        /** Recognition keeps going; finals wait in the overflow list, and partials the client thread misses are dropped. */
+        DROP_PARTIALS
+    }
+}
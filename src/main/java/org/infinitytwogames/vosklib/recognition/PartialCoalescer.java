@@ -0,0 +1,109 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Sits between the decode thread and the client thread so partial results don't flood the main thread.
+ * <p>
+ * The decode thread {@link #offer offers} every partial; repeats of the last one are dropped before
+ * a String is even created. Whatever is newest when the client ticks is {@link #poll polled} once,
+ * so at most one partial is delivered per tick no matter how many chunks were decoded in between.
+ */
+public class PartialCoalescer {
+    // Decode thread only
+    private final VoskResult lastOffered = new VoskResult(VoskResult.Kind.PARTIAL);
+    
+    private final AtomicReference<String> pending = new AtomicReference<>();
+    private final AtomicLong dropped = new AtomicLong();
+    
+    // Client thread only
+    private String lastDelivered = "";
+    
+    /**
+     * Called from the decode thread.
+     *
+     * @return {@code true} if the partial differed from the previous one and was queued.
+     */
+    public boolean offer(VoskResult partial) {
+        if (partial.contentEquals(lastOffered)) return false;
+        
+        lastOffered.copyFrom(partial);
+        // Replaces anything the client hasn't picked up yet
+        if (pending.getAndSet(partial.toString()) != null) dropped.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Called from the decode thread when an utterance is finalized. The stale partial is discarded.
+     */
+    public void endUtterance() {
+        lastOffered.clear();
+        if (pending.getAndSet(null) != null) dropped.incrementAndGet();
+    }
+    
+    /**
+     * Called from the client thread once per tick. Hands the newest partial, if any, to {@code sink}
+     * together with the words added since the last delivered partial.
+     *
+     * @return {@code true} if something was delivered.
+     */
+    public boolean poll(BiConsumer<String, String> sink) {
+        String text = pending.getAndSet(null);
+        if (text == null) return false;
+        
+        String delta = delta(lastDelivered, text);
+        lastDelivered = text;
+        sink.accept(text, delta);
+        return true;
+    }
+    
+    public boolean hasPending() {
+        return pending.get() != null;
+    }
+    
+    /**
+     * How many partials were replaced by a newer one (or by the final result) before the client picked them up.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    /**
+     * Called from the client thread once the final result of an utterance was delivered.
+     */
+    public void resetDelivered() {
+        lastDelivered = "";
+    }
+    
+    /**
+     * @return The words appended to {@code previous}, or the whole {@code text} if the hypothesis was revised.
+     */
+    public static String delta(String previous, String text) {
+        return text.substring(deltaStart(previous, text));
+    }
+    
+    /**
+     * Like {@link #delta}, but returns where the delta starts in {@code text} instead of copying it.
+     */
+    public static int deltaStart(CharSequence previous, CharSequence text) {
+        int length = previous.length();
+        if (length == 0 || text.length() < length) return 0;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != previous.charAt(i)) return 0;
+        }
+        if (text.length() == length) return length;
+        
+        // "hello wor" -> "hello world" is a revision of the last word, not an addition
+        if (text.charAt(length) != ' ') return 0;
+        return length + 1;
+    }
+    
+    /**
+     * Decode thread only: the last partial that was queued, or empty at the start of an utterance.
+     */
+    VoskResult getLastOffered() {
+        return lastOffered;
+    }
+}
@@ -0,0 +1,561 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import com.mojang.logging.LogUtils;
+import org.infinitytwogames.vosklib.audio.LatencyHistogram;
+import org.infinitytwogames.vosklib.audio.PcmRingBuffer;
+import org.infinitytwogames.vosklib.audio.VoiceActivityDetector;
+import org.slf4j.Logger;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * One recognizer decoding the shared audio stream on its own decode thread.
+ * <p>
+ * VoskLib always has the {@link #DEFAULT_ID default} channel; mods can add more (for example free
+ * dictation next to a command grammar). Every channel reads the same captured PCM through its own
+ * {@link PcmRingBuffer.Cursor}, shares the loaded {@link Model}, and tags its results with its id.
+ * <p>
+ * Grammar changes are double-buffered: the new recognizer is prepared off-thread and swapped in
+ * by the decode thread at the next utterance boundary.
+ */
+public class RecognitionChannel {
+    public static final String DEFAULT_ID = "default";
+    
+    private static final long DECODE_POLL_NANOS = 100_000_000L;
+    private static final Logger logger = LogUtils.getLogger();
+    
+    private final String id;
+    private final RecognizerCache cache;
+    private final RecognitionListeners listeners;
+    private final BiConsumer<RecognitionChannel, RecognitionResult> onResult;
+    
+    // LOCK: Ensures the recognizer isn't swapped or closed while it is decoding
+    private final Object lock = new Object();
+    private Recognizer recognizer;
+    private String key;
+    private volatile String requestedKey;
+    
+    // The back buffer: a prepared recognizer waiting for the decode thread to reach an utterance boundary
+    private final AtomicReference<PendingRecognizer> pending = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong(0);
+    private volatile long lastSwapNanos = 0;
+    
+    // Decode-thread state
+    private final VoiceActivityDetector vad;
+    private final VoskResult partialResult = new VoskResult(VoskResult.Kind.PARTIAL);
+    private final VoskResult finalResult = new VoskResult(VoskResult.Kind.FINAL);
+    private final PartialCoalescer partials = new PartialCoalescer();
+    private final VoskResult partialDelta = new VoskResult(VoskResult.Kind.PARTIAL);
+    private final ArrayDeque<RecognitionResult> finished = new ArrayDeque<>(2);
+    private volatile boolean utteranceOpen = false;
+    private volatile boolean inSession = false;
+    private volatile boolean active = true;
+    private volatile boolean wordDetails = false;
+    
+    // First-result latency of the current session: from the first decoded chunk to the first non-empty result
+    private long firstDecodeNanos = 0;
+    private volatile long firstResultNanos = -1;
+    
+    // The current session's first real chunk, from acceptWaveForm to its result
+    private volatile long firstChunkNanos = -1;
+    
+    // Set when a newly built recognizer is installed, until it decodes its first real chunk
+    private boolean unused = false;
+    private boolean warmedUp = false;
+    
+    // The first real chunk of every newly built recognizer, by whether it was warmed up. Never reset
+    private final LatencyHistogram firstChunkWarm = new LatencyHistogram();
+    private final LatencyHistogram firstChunkCold = new LatencyHistogram();
+    
+    // Metrics, updated by the decode thread
+    private final double nanosPerByte;
+    private final LatencyHistogram acceptLatency = new LatencyHistogram();
+    private volatile long decodedAudioNanos = 0;
+    private volatile long decodeNanos = 0;
+    private volatile long chunkCaptureNanos = 0;
+    private volatile PcmRingBuffer.Cursor cursor;
+    private volatile boolean decoding = false;
+    private volatile LongConsumer pickUpListener;
+    
+    /**
+     * @param listeners Its decode-thread listeners are called directly from the decode thread.
+     * @param onResult  Called on the decode thread, outside the channel's lock, with every non-empty final result.
+     */
+    public RecognitionChannel(String id, int sampleRate, RecognizerCache cache, RecognitionListeners listeners,
+                              BiConsumer<RecognitionChannel, RecognitionResult> onResult) {
+        this.id = id;
+        this.cache = cache;
+        this.listeners = listeners;
+        this.onResult = onResult;
+        this.vad = new VoiceActivityDetector(sampleRate);
+        this.nanosPerByte = 1e9 / (sampleRate * 2.0);
+    }
+    
+    /**
+     * Switches to the recognizer for {@code key} right away, building it on the calling thread if it isn't cached.
+     * Only call this while the channel isn't decoding, and not from the client thread.
+     *
+     * @param warmUp Called with a recognizer that had to be built rather than taken from the cache, before it is
+     *               installed; returns whether it warmed it up.
+     */
+    public void switchNow(Model model, String key, Predicate<Recognizer> warmUp) throws IOException {
+        synchronized (lock) {
+            generation.incrementAndGet();
+            discardPending();
+            requestedKey = key;
+            
+            // Already decoding with this grammar
+            if (recognizer != null && key.equals(this.key)) return;
+            
+            long start = System.nanoTime();
+            boolean cached = cache.contains(key);
+            Recognizer next = cache.acquire(model, key);
+            boolean warmed = !cached && warmUp.test(next);
+            
+            // Park the old one in the cache instead of freeing it
+            if (recognizer != null) cache.release(this.key, recognizer);
+            next.setWords(wordDetails);
+            recognizer = next;
+            this.key = key;
+            unused = !cached;
+            warmedUp = warmed;
+            lastSwapNanos = System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Prepares the recognizer for {@code key} on {@code executor}. During a session the decode thread swaps it in
+     * between utterances; otherwise it is installed as soon as it is ready.
+     *
+     * @param warmUp Called on {@code executor} with a recognizer that had to be built rather than taken from the
+     *               cache; returns whether it warmed it up.
+     */
+    public void prepare(Model model, String key, Predicate<Recognizer> warmUp, Executor executor) {
+        long requestGeneration;
+        synchronized (lock) {
+            requestGeneration = generation.incrementAndGet();
+            requestedKey = key;
+            
+            // Asking for the grammar we already have cancels any switch in flight
+            if (key.equals(this.key)) {
+                discardPending();
+                return;
+            }
+        }
+        
+        long requestedAt = System.nanoTime();
+        CompletableFuture.supplyAsync(() -> {
+            // Superseded while it was queued: don't build a recognizer nobody wants
+            if (requestGeneration != generation.get()) return null;
+            
+            try {
+                boolean cached = cache.contains(key);
+                Recognizer next = cache.acquire(model, key);
+                return new PendingRecognizer(key, next, requestGeneration, requestedAt, !cached, !cached && warmUp.test(next));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).whenComplete((next, error) -> {
+            if (error != null) {
+                logger.error("VoskLib: Failed to prepare recognizer for grammar {}", key, error);
+                return;
+            }
+            if (next == null) return;
+            
+            offerPending(next);
+            synchronized (lock) {
+                if (!inSession) applyPending(); // No decode thread to do it
+            }
+        });
+    }
+    
+    /**
+     * Records the grammar to build once a model is available, without building anything now.
+     */
+    public void setRequestedKey(String key) {
+        synchronized (lock) {
+            generation.incrementAndGet();
+            discardPending();
+            requestedKey = key;
+        }
+    }
+    
+    private void offerPending(PendingRecognizer candidate) {
+        while (true) {
+            PendingRecognizer current = pending.get();
+            
+            // A newer request already finished preparing
+            if (current != null && current.generation() > candidate.generation()) {
+                cache.release(candidate.key(), candidate.recognizer());
+                return;
+            }
+            if (pending.compareAndSet(current, candidate)) {
+                if (current != null) cache.release(current.key(), current.recognizer());
+                return;
+            }
+        }
+    }
+    
+    private void discardPending() {
+        PendingRecognizer stale = pending.getAndSet(null);
+        if (stale != null) cache.release(stale.key(), stale.recognizer());
+    }
+    
+    // Must be called while holding the lock, between utterances
+    private void applyPending() {
+        PendingRecognizer next = pending.getAndSet(null);
+        if (next == null) return;
+        
+        // Superseded by a later request while it was being prepared
+        if (next.generation() != generation.get()) {
+            cache.release(next.key(), next.recognizer());
+            return;
+        }
+        
+        if (recognizer != null) cache.release(key, recognizer);
+        recognizer = next.recognizer();
+        recognizer.setWords(wordDetails);
+        key = next.key();
+        unused = next.built();
+        warmedUp = next.warmedUp();
+        
+        lastSwapNanos = System.nanoTime() - next.requestedAt();
+        logger.debug("VoskLib: Channel {} swapped recognizer in {} ms.", id, lastSwapNanos / 1_000_000.0);
+    }
+    
+    /**
+     * Frees the recognizer outright, e.g. because the model it belongs to is about to be closed.
+     * {@link #getRequestedKey()} is kept so it can be rebuilt for the next model.
+     */
+    public void closeRecognizer() {
+        synchronized (lock) {
+            generation.incrementAndGet();
+            discardPending();
+            if (recognizer != null) {
+                recognizer.close();
+                recognizer = null;
+                key = null;
+            }
+        }
+    }
+    
+    /**
+     * Stops this channel's decode thread and hands its recognizer back to the cache.
+     */
+    public void remove() {
+        active = false;
+        synchronized (lock) {
+            generation.incrementAndGet();
+            discardPending();
+            if (recognizer != null) {
+                cache.release(key, recognizer);
+                recognizer = null;
+                key = null;
+            }
+        }
+    }
+    
+    /**
+     * Resets per-session state. Called before the decode thread starts.
+     */
+    public void beginSession() {
+        synchronized (lock) {
+            applyPending();
+            inSession = true;
+        }
+        utteranceOpen = false;
+        firstDecodeNanos = 0;
+        firstResultNanos = -1;
+        firstChunkNanos = -1;
+        partials.endUtterance();
+    }
+    
+    /**
+     * The decode stage: drains {@code cursor} and feeds the recognizer until {@code running} turns false,
+     * the channel is removed or the thread is interrupted. Closes the cursor on exit.
+     *
+     * @param chunkSize    How many bytes to wait for before decoding; read on every chunk so it can change while running.
+     * @param maxChunkSize The largest value {@code chunkSize} will ever return.
+     */
+    public void decodeLoop(PcmRingBuffer.Cursor cursor, IntSupplier chunkSize, int maxChunkSize, BooleanSupplier running) {
+        this.cursor = cursor;
+        try (cursor) {
+            byte[] chunk = new byte[maxChunkSize];
+            byte[] preRoll = new byte[vad.getPreRollCapacity()];
+            
+            while (active && running.getAsBoolean() && !Thread.currentThread().isInterrupted()) {
+                int size = Math.min(chunkSize.getAsInt(), maxChunkSize);
+                if (!cursor.await(size, DECODE_POLL_NANOS)) continue;
+                
+                decoding = true;
+                int nbytes = cursor.read(chunk, 0, size);
+                LongConsumer pickUps = pickUpListener;
+                if (pickUps != null) cursor.pickUp(pickUps);
+                if (nbytes > 0) {
+                    // Whatever is still buffered was captured after this chunk's last sample
+                    long start = System.nanoTime();
+                    chunkCaptureNanos = start - (long) (cursor.available() * nanosPerByte);
+                    
+                    decode(chunk, nbytes, preRoll);
+                    decodeNanos += System.nanoTime() - start;
+                    decodedAudioNanos += (long) (nbytes * nanosPerByte);
+                }
+                decoding = false;
+            }
+        } finally {
+            decoding = false;
+            this.cursor = null;
+            synchronized (lock) {
+                inSession = false;
+            }
+        }
+    }
+    
+    private void decode(byte[] chunk, int nbytes, byte[] preRoll) {
+        // Grammar changes are applied between utterances, never in the middle of one. An open VAD gate counts as
+        // one even before the first partial, as the recognizer already holds its audio
+        if (!utteranceOpen && !vad.isInSpeech() && pending.get() != null) {
+            synchronized (lock) {
+                applyPending();
+            }
+        }
+        
+        // Silence never reaches the native recognizer
+        VoiceActivityDetector.Decision decision = vad.process(chunk, nbytes);
+        if (decision == VoiceActivityDetector.Decision.SKIP) return;
+        
+        synchronized (lock) {
+            if (recognizer == null) return;
+            
+            if (decision == VoiceActivityDetector.Decision.ONSET) {
+                utteranceOpen = true;
+                int n = vad.drainPreRoll(preRoll);
+                if (n > 0) acceptAudio(preRoll, n);
+            }
+            
+            acceptAudio(chunk, nbytes);
+            
+            // Speech is over: flush instead of waiting for the recognizer's own endpointing
+            if (decision == VoiceActivityDetector.Decision.END_OF_SPEECH) {
+                utteranceOpen = false;
+                partials.endUtterance();
+                deliverFinal(recognizer.getFinalResult());
+            }
+        }
+        
+        // Outside the lock: handing a result over may wait for the client thread, which may want the lock
+        RecognitionResult result;
+        while ((result = finished.poll()) != null) {
+            listeners.fireResult(RecognitionListener.Delivery.DECODE_THREAD, id, result);
+            onResult.accept(this, result);
+        }
+    }
+    
+    // Must be called while holding the lock
+    private void acceptAudio(byte[] data, int len) {
+        if (firstDecodeNanos == 0) firstDecodeNanos = System.nanoTime();
+        
+        long start = System.nanoTime();
+        boolean endOfUtterance = recognizer.acceptWaveForm(data, len);
+        acceptLatency.record(System.nanoTime() - start);
+        
+        if (endOfUtterance) {
+            utteranceOpen = false;
+            partials.endUtterance();
+            deliverFinal(recognizer.getResult());
+        } else {
+            // Coalesced and handed to the client thread on its next tick
+            if (readResult(recognizer.getPartialResult(), partialResult)) {
+                markFirstResult();
+                utteranceOpen = true;
+                
+                int deltaStart = PartialCoalescer.deltaStart(partials.getLastOffered(), partialResult);
+                if (partials.offer(partialResult) && listeners.has(RecognitionListener.Delivery.DECODE_THREAD)) {
+                    partialDelta.copyFrom(partialResult, deltaStart);
+                    listeners.firePartial(RecognitionListener.Delivery.DECODE_THREAD, id, partialResult, partialDelta);
+                }
+            }
+        }
+        
+        if (firstChunkNanos < 0) recordFirstChunk(System.nanoTime() - start);
+    }
+    
+    // Must be called while holding the lock
+    private void recordFirstChunk(long nanos) {
+        firstChunkNanos = nanos;
+        if (!unused) return;
+        
+        // Only a recognizer's very first chunk shows what warming it up saved
+        (warmedUp ? firstChunkWarm : firstChunkCold).record(nanos);
+        unused = false;
+    }
+    
+    // Must be called while holding the lock; delivered by decode() once it is released
+    private void deliverFinal(String json) {
+        if (!readResult(json, finalResult)) return;
+        markFirstResult();
+        
+        // Parsed once here, so listeners never see the JSON
+        String text = finalResult.toString();
+        finished.add(wordDetails ? RecognitionResult.parse(json, text) : RecognitionResult.of(text));
+    }
+    
+    // Helper to extract values safely
+    private static boolean readResult(String json, VoskResult into) {
+        if (!ResultExtractor.extract(json, into)) {
+            logger.error("Failed to parse Vosk JSON: {}", json);
+            return false;
+        }
+        return !into.isEmpty();
+    }
+    
+    private void markFirstResult() {
+        if (firstResultNanos < 0) firstResultNanos = System.nanoTime() - firstDecodeNanos;
+    }
+    
+    /**
+     * Called from the client thread once per tick; see {@link PartialCoalescer#poll}.
+     */
+    public boolean pollPartial(BiConsumer<String, String> sink) {
+        return partials.poll(sink);
+    }
+    
+    /**
+     * Called from the client thread once a final result of this channel was delivered.
+     */
+    public void resetDeliveredPartial() {
+        partials.resetDelivered();
+    }
+    
+    /**
+     * Decode thread only: when the last sample of the chunk being decoded was captured, by {@link System#nanoTime()}.
+     */
+    public long getChunkCaptureNanos() {
+        return chunkCaptureNanos;
+    }
+    
+    /**
+     * @return Time spent decoding divided by the duration of the audio decoded; above 1 the channel falls behind.
+     */
+    public double getRealTimeFactor() {
+        long audio = decodedAudioNanos;
+        return audio == 0 ? 0 : (double) decodeNanos / audio;
+    }
+    
+    public LatencyHistogram getAcceptLatency() {
+        return acceptLatency;
+    }
+    
+    /**
+     * @return Captured audio this channel hasn't read yet.
+     */
+    public int getBacklogBytes() {
+        PcmRingBuffer.Cursor current = cursor;
+        return current != null ? current.available() : 0;
+    }
+    
+    /**
+     * @return {@code true} if the decode thread is waiting for audio with less than {@code chunkSize} bytes buffered,
+     * i.e. everything that can be decoded has been.
+     */
+    public boolean isIdle(int chunkSize) {
+        // Backlog first: once it's low the chunk was read, and decoding was set before that read
+        return getBacklogBytes() < chunkSize && !decoding;
+    }
+    
+    /**
+     * @param listener Called on the decode thread with the capture time of every stamped chunk as this channel
+     *                 starts reading it (see {@link PcmRingBuffer#write(byte[], int, int, long)}), or {@code null}.
+     */
+    public void setPickUpListener(LongConsumer listener) {
+        pickUpListener = listener;
+    }
+    
+    public void resetMetrics() {
+        acceptLatency.reset();
+        decodedAudioNanos = 0;
+        decodeNanos = 0;
+    }
+    
+    public boolean hasPendingPartial() {
+        return partials.hasPending();
+    }
+    
+    public long getDroppedPartials() {
+        return partials.getDropped();
+    }
+    
+    /**
+     * Turns per-word timings and confidences on or off for this channel's results. Applies from the next utterance.
+     */
+    public void setWordDetails(boolean enabled) {
+        synchronized (lock) {
+            wordDetails = enabled;
+            if (recognizer != null) recognizer.setWords(enabled);
+        }
+    }
+    
+    public boolean isWordDetails() {
+        return wordDetails;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    /**
+     * @return The grammar key this channel should be using, even if its recognizer hasn't been built yet.
+     */
+    public String getRequestedKey() {
+        return requestedKey;
+    }
+    
+    public boolean isActive() {
+        return active;
+    }
+    
+    public Recognizer getRecognizer() {
+        return recognizer;
+    }
+    
+    public VoiceActivityDetector getVoiceActivityDetector() {
+        return vad;
+    }
+    
+    public double getLastSwapLatencyMillis() {
+        return lastSwapNanos / 1_000_000.0;
+    }
+    
+    public double getFirstResultLatencyMillis() {
+        long nanos = firstResultNanos;
+        return nanos < 0 ? -1 : nanos / 1_000_000.0;
+    }
+    
+    public double getFirstChunkLatencyMillis() {
+        long nanos = firstChunkNanos;
+        return nanos < 0 ? -1 : nanos / 1_000_000.0;
+    }
+    
+    /**
+     * @param warmedUp Whether to return the recognizers that were warmed up before their first chunk, or those that weren't.
+     * @return How long newly built recognizers took for their first real chunk, from {@code acceptWaveForm} to its result.
+     */
+    public LatencyHistogram getFirstChunkLatency(boolean warmedUp) {
+        return warmedUp ? firstChunkWarm : firstChunkCold;
+    }
+    
+    private record PendingRecognizer(String key, Recognizer recognizer, long generation, long requestedAt, boolean built, boolean warmedUp) {}
+}
@@ -0,0 +1,33 @@
+package org.infinitytwogames.vosklib.recognition;
+
+/**
+ * Receives recognition results directly, without going through the Forge event bus.
+ * <p>
+ * Registered with {@code VoskManager.addListener}. A {@link Delivery#DECODE_THREAD decode-thread}
+ * listener is called as soon as a result is decoded, with no allocation and no hop to the main
+ * thread, so it must be quick and must not touch game state. A {@link Delivery#MAIN_THREAD main-thread}
+ * listener is called on the client thread right before the matching {@code VoskVoiceEvent} is posted.
+ */
+public interface RecognitionListener {
+    /**
+     * A new partial hypothesis for the current utterance.
+     * <p>
+     * On the decode thread {@code text} and {@code delta} are reused buffers: they are only valid
+     * during this call, so call {@code toString()} on them if you need to keep them.
+     *
+     * @param delta The words appended since the previous partial, or the whole text if the hypothesis was revised.
+     */
+    default void onPartial(String channel, CharSequence text, CharSequence delta) {}
+    
+    /**
+     * The final result of an utterance.
+     */
+    default void onResult(String channel, RecognitionResult result) {}
+    
+    enum Delivery {
+        /** Called on the channel's decode thread. */
+        DECODE_THREAD,
+        /** Called on the client thread. */
+        MAIN_THREAD
+    }
+}
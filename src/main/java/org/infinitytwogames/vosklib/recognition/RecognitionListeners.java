@@ -0,0 +1,92 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * The registered {@link RecognitionListener}s, split by the thread they want to be called on.
+ * <p>
+ * Each list is a copy-on-write array: registering copies it, while firing just iterates the
+ * current array, so dispatch takes no lock and allocates nothing. A listener that throws is
+ * logged and skipped; it never stops the decode thread or the other listeners.
+ */
+public class RecognitionListeners {
+    private static final Logger logger = LogUtils.getLogger();
+    private static final RecognitionListener[] NONE = new RecognitionListener[0];
+    
+    private volatile RecognitionListener[] decode = NONE;
+    private volatile RecognitionListener[] main = NONE;
+    
+    public synchronized void add(RecognitionListener listener, RecognitionListener.Delivery delivery) {
+        if (delivery == RecognitionListener.Delivery.DECODE_THREAD) {
+            decode = with(decode, listener);
+        } else {
+            main = with(main, listener);
+        }
+    }
+    
+    /**
+     * Removes {@code listener} from both threads.
+     *
+     * @return {@code true} if it was registered.
+     */
+    public synchronized boolean remove(RecognitionListener listener) {
+        RecognitionListener[] oldDecode = decode;
+        RecognitionListener[] oldMain = main;
+        decode = without(oldDecode, listener);
+        main = without(oldMain, listener);
+        return decode != oldDecode || main != oldMain;
+    }
+    
+    public boolean has(RecognitionListener.Delivery delivery) {
+        return listeners(delivery).length > 0;
+    }
+    
+    public void firePartial(RecognitionListener.Delivery delivery, String channel, CharSequence text, CharSequence delta) {
+        for (RecognitionListener listener : listeners(delivery)) {
+            try {
+                listener.onPartial(channel, text, delta);
+            } catch (RuntimeException e) {
+                logger.error("VoskLib: Recognition listener {} failed on a partial result.", listener, e);
+            }
+        }
+    }
+    
+    public void fireResult(RecognitionListener.Delivery delivery, String channel, RecognitionResult result) {
+        for (RecognitionListener listener : listeners(delivery)) {
+            try {
+                listener.onResult(channel, result);
+            } catch (RuntimeException e) {
+                logger.error("VoskLib: Recognition listener {} failed on a result.", listener, e);
+            }
+        }
+    }
+    
+    private RecognitionListener[] listeners(RecognitionListener.Delivery delivery) {
+        return delivery == RecognitionListener.Delivery.DECODE_THREAD ? decode : main;
+    }
+    
+    private static RecognitionListener[] with(RecognitionListener[] array, RecognitionListener listener) {
+        for (RecognitionListener existing : array) {
+            if (existing == listener) return array;
+        }
+        
+        RecognitionListener[] grown = Arrays.copyOf(array, array.length + 1);
+        grown[array.length] = listener;
+        return grown;
+    }
+    
+    private static RecognitionListener[] without(RecognitionListener[] array, RecognitionListener listener) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] != listener) continue;
+            
+            RecognitionListener[] shrunk = new RecognitionListener[array.length - 1];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 1, shrunk, i, array.length - i - 1);
+            return shrunk;
+        }
+        return array;
+    }
+}
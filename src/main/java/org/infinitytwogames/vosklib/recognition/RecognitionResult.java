@@ -0,0 +1,101 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable, already parsed final result.
+ * <p>
+ * Built once on the decode thread and shared by every listener of the result, so nobody has to
+ * re-parse Vosk's JSON or re-tokenize the text. {@link #words()} is only filled in while word
+ * details are enabled ({@code VoskManager.setWordDetails}); otherwise it is empty.
+ *
+ * @param words         Every recognized word in order. Timings count the audio the recognizer was fed, so
+ *                      silence skipped by voice activity detection isn't included.
+ * @param finishedNanos {@link System#nanoTime()} when the recognizer produced this result.
+ */
+public record RecognitionResult(String text, List<Word> words, long finishedNanos) {
+    public static RecognitionResult of(String text) {
+        return new RecognitionResult(text, List.of(), System.nanoTime());
+    }
+    
+    /**
+     * Parses a final result produced with {@code setWords(true)}. Falls back to {@code text} alone if {@code json} has no usable word list.
+     */
+    public static RecognitionResult parse(String json, String text) {
+        long now = System.nanoTime();
+        try {
+            JsonElement root = JsonParser.parseString(json);
+            if (!root.isJsonObject() || !(root.getAsJsonObject().get("result") instanceof JsonArray array)) {
+                return new RecognitionResult(text, List.of(), now);
+            }
+            
+            List<Word> words = new ArrayList<>(array.size());
+            for (JsonElement element : array) {
+                JsonObject word = element.getAsJsonObject();
+                words.add(new Word(
+                        word.get("word").getAsString(),
+                        word.get("start").getAsDouble(),
+                        word.get("end").getAsDouble(),
+                        word.has("conf") ? word.get("conf").getAsDouble() : 1.0
+                ));
+            }
+            return new RecognitionResult(text, List.copyOf(words), now);
+            
+        } catch (RuntimeException e) {
+            // Malformed or unexpected output: the text is still good
+            return new RecognitionResult(text, List.of(), now);
+        }
+    }
+    
+    public boolean hasWords() {
+        return !words.isEmpty();
+    }
+    
+    /**
+     * @return When the utterance started, in seconds of decoded audio, or -1 without word details.
+     */
+    public double startSeconds() {
+        return words.isEmpty() ? -1 : words.get(0).start();
+    }
+    
+    /**
+     * @return When the utterance ended, in seconds of decoded audio, or -1 without word details.
+     */
+    public double endSeconds() {
+        return words.isEmpty() ? -1 : words.get(words.size() - 1).end();
+    }
+    
+    public double durationSeconds() {
+        return words.isEmpty() ? 0 : endSeconds() - startSeconds();
+    }
+    
+    /**
+     * @return The mean word confidence between 0 and 1, or 1 without word details.
+     */
+    public double averageConfidence() {
+        if (words.isEmpty()) return 1.0;
+        
+        double sum = 0;
+        for (Word word : words) sum += word.confidence();
+        return sum / words.size();
+    }
+    
+    /**
+     * One recognized word.
+     *
+     * @param start      In seconds of decoded audio.
+     * @param end        In seconds of decoded audio.
+     * @param confidence Between 0 and 1.
+     */
+    public record Word(String word, double start, double end, double confidence) {
+        public double durationSeconds() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import com.google.gson.JsonArray;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of idle native {@link Recognizer}s, keyed by their normalized grammar.
+ * <p>
+ * Only recognizers that are <i>not</i> in use live here: the caller {@link #acquire acquires} one
+ * (removing it from the cache) and {@link #release releases} it back when switching to another
+ * grammar. Eviction closes the native recognizer, so the active one can never be freed under the
+ * decode stage.
+ * <p>
+ * Native memory can't be measured from Java, so each entry is charged an estimate based on the
+ * size of its grammar and the cache is kept under both an entry and a byte budget.
+ */
+public class RecognizerCache {
+    /** The key used for the free-dictation recognizer (no grammar). */
+    public static final String NO_GRAMMAR = "";
+    
+    // Rough native footprint of a recognizer: decoder state plus the compiled grammar graph
+    private static final long BASE_BYTES = 4L * 1024 * 1024;
+    private static final long BYTES_PER_GRAMMAR_CHAR = 2L * 1024;
+    private static final long FREE_DICTATION_BYTES = 16L * 1024 * 1024;
+    
+    private static final Logger logger = LogUtils.getLogger();
+    
+    private final LinkedHashMap<String, Recognizer> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private final float sampleRate;
+    
+    private int maxEntries;
+    private long maxBytes;
+    private long usedBytes = 0;
+    
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    
+    public RecognizerCache(float sampleRate, int maxEntries, long maxBytes) {
+        this.sampleRate = sampleRate;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Builds the cache key for a grammar: trimmed, lowercased, de-duplicated and sorted words plus {@code [unk]},
+     * as the JSON array Vosk expects. Two grammars that differ only in order or case share a recognizer.
+     *
+     * @return The JSON grammar, or {@link #NO_GRAMMAR} if {@code grammar} has no usable entries.
+     */
+    public static String normalize(String[] grammar) {
+        if (grammar == null) return NO_GRAMMAR;
+        
+        TreeSet<String> words = new TreeSet<>();
+        for (String s : grammar) {
+            if (s != null && !s.trim().isEmpty()) {
+                words.add(s.trim().toLowerCase());
+            }
+        }
+        if (words.isEmpty()) return NO_GRAMMAR;
+        
+        words.add("[unk]");
+        
+        JsonArray array = new JsonArray();
+        words.forEach(array::add);
+        return array.toString();
+    }
+    
+    /**
+     * Takes the recognizer for {@code key} out of the cache, or creates a new one on a miss.
+     */
+    public Recognizer acquire(Model model, String key) throws IOException {
+        synchronized (this) {
+            Recognizer cached = idle.remove(key);
+            if (cached != null) {
+                usedBytes -= estimateBytes(key);
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        
+        // Build outside the lock; this is the slow part
+        misses.incrementAndGet();
+        return key.equals(NO_GRAMMAR)
+                ? new Recognizer(model, sampleRate)
+                : new Recognizer(model, sampleRate, key);
+    }
+    
+    /**
+     * Resets {@code recognizer} and keeps it for later reuse, evicting the least recently used entries if needed.
+     */
+    public synchronized void release(String key, Recognizer recognizer) {
+        recognizer.reset();
+        
+        Recognizer previous = idle.put(key, recognizer);
+        if (previous == null) {
+            usedBytes += estimateBytes(key);
+        } else if (previous != recognizer) {
+            previous.close(); // Same key, so the estimate is already counted
+        }
+        
+        trim();
+    }
+    
+    private void trim() {
+        Iterator<Map.Entry<String, Recognizer>> it = idle.entrySet().iterator();
+        while (it.hasNext() && (idle.size() > maxEntries || usedBytes > maxBytes)) {
+            Map.Entry<String, Recognizer> eldest = it.next();
+            it.remove();
+            
+            usedBytes -= estimateBytes(eldest.getKey());
+            eldest.getValue().close();
+            evictions.incrementAndGet();
+            logger.debug("VoskLib: Evicted cached recognizer ({} left, ~{} KB).", idle.size(), usedBytes / 1024);
+        }
+    }
+    
+    public synchronized void setLimits(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        trim();
+    }
+    
+    /**
+     * Closes every cached recognizer. Must be called before the {@link Model} they belong to is closed.
+     */
+    public synchronized void clear() {
+        idle.values().forEach(Recognizer::close);
+        idle.clear();
+        usedBytes = 0;
+    }
+    
+    static long estimateBytes(String key) {
+        if (key.equals(NO_GRAMMAR)) return FREE_DICTATION_BYTES;
+        return BASE_BYTES + key.length() * BYTES_PER_GRAMMAR_CHAR;
+    }
+    
+    public synchronized boolean contains(String key) {
+        return idle.containsKey(key);
+    }
+    
+    public synchronized int size() {
+        return idle.size();
+    }
+    
+    public synchronized long getEstimatedBytes() {
+        return usedBytes;
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,99 @@
+package org.infinitytwogames.vosklib.recognition;
+
+/**
+ * Pulls the {@code text}/{@code partial} field out of the JSON Vosk returns without building a tree.
+ * <p>
+ * Vosk's output is tiny and always has the same shape ({@code {"partial" : "..."}} or
+ * {@code {"text" : "..."}}, plus a word list when word details are on), so a scan for the key in
+ * key position followed by a string decode is enough.
+ */
+public class ResultExtractor {
+    private ResultExtractor() {}
+    
+    /**
+     * Decodes the field matching {@code into}'s kind into {@code into}.
+     *
+     * @return {@code true} if the field was found and well-formed. On {@code false}, {@code into} is left empty.
+     */
+    public static boolean extract(String json, VoskResult into) {
+        into.clear();
+        if (json == null) return false;
+        
+        int i = findValue(json, into.getKind().jsonKey());
+        if (i < 0 || json.charAt(i) != '"') return false;
+        
+        return readString(json, i + 1, into);
+    }
+    
+    // Index of the value after the first occurrence of key that is in key position, or -1.
+    // A word list puts "text" in value position ("word" : "text"), so that one must be skipped.
+    private static int findValue(String json, String key) {
+        for (int at = json.indexOf(key); at >= 0; at = json.indexOf(key, at + 1)) {
+            int before = skipWhitespaceBack(json, at - 1);
+            if (before < 0 || (json.charAt(before) != '{' && json.charAt(before) != ',')) continue;
+            
+            int i = skipWhitespace(json, at + key.length());
+            if (i >= json.length() || json.charAt(i) != ':') continue;
+            
+            i = skipWhitespace(json, i + 1);
+            return i < json.length() ? i : -1;
+        }
+        return -1;
+    }
+    
+    private static int skipWhitespace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
+    }
+    
+    private static int skipWhitespaceBack(String json, int i) {
+        while (i >= 0 && Character.isWhitespace(json.charAt(i))) i--;
+        return i;
+    }
+    
+    private static boolean readString(String json, int i, VoskResult into) {
+        int end = json.length();
+        while (i < end) {
+            char c = json.charAt(i++);
+            if (c == '"') return true;
+            if (c != '\\') {
+                into.append(c);
+                continue;
+            }
+            
+            if (i >= end) break;
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'n' -> into.append('\n');
+                case 't' -> into.append('\t');
+                case 'r' -> into.append('\r');
+                case 'b' -> into.append('\b');
+                case 'f' -> into.append('\f');
+                case 'u' -> {
+                    int code = i + 4 <= end ? hex4(json, i) : -1;
+                    if (code < 0) {
+                        into.clear();
+                        return false;
+                    }
+                    into.append((char) code);
+                    i += 4;
+                }
+                default -> into.append(escaped); // \" \\ \/
+            }
+        }
+        
+        // Ran off the end without a closing quote
+        into.clear();
+        return false;
+    }
+    
+    private static int hex4(String json, int i) {
+        int code = 0;
+        for (int j = i; j < i + 4; j++) {
+            int digit = Character.digit(json.charAt(j), 16);
+            if (digit < 0) return -1;
+            code = (code << 4) | digit;
+        }
+        return code;
+    }
+}
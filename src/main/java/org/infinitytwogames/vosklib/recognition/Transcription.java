@@ -0,0 +1,44 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The result of transcribing one file with {@link BatchTranscriber}.
+ *
+ * @param segments        Every final result in order, one per utterance.
+ * @param audioNanos      The length of the audio in the file.
+ * @param processingNanos How long decoding took, from mapping the file to the last result.
+ * @param error           Why the file couldn't be transcribed, or {@code null} if it was.
+ */
+public record Transcription(Path file, List<String> segments, long audioNanos, long processingNanos, String error) {
+    public static Transcription failed(Path file, long processingNanos, String error) {
+        return new Transcription(file, List.of(), 0, processingNanos, error);
+    }
+    
+    public boolean isSuccess() {
+        return error == null;
+    }
+    
+    /**
+     * @return All segments joined by spaces.
+     */
+    public String text() {
+        return String.join(" ", segments);
+    }
+    
+    /**
+     * @return Processing time divided by audio length. Below 1 means faster than real time.
+     */
+    public double realTimeFactor() {
+        return audioNanos == 0 ? 0 : (double) processingNanos / audioNanos;
+    }
+    
+    public double audioMillis() {
+        return audioNanos / 1_000_000.0;
+    }
+    
+    public double processingMillis() {
+        return processingNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,106 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A reusable, mutable holder for the text of a single Vosk result.
+ * <p>
+ * The decode stage keeps one of these per kind and refills it for every chunk, so extracting
+ * the text doesn't allocate. Call {@link #toString()} only when the text actually has to leave
+ * the decode thread.
+ */
+public class VoskResult implements CharSequence {
+    private char[] chars = new char[128];
+    private int length = 0;
+    private Kind kind;
+    
+    public VoskResult(Kind kind) {
+        this.kind = kind;
+    }
+    
+    public Kind getKind() {
+        return kind;
+    }
+    
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+    
+    public void clear() {
+        length = 0;
+    }
+    
+    public void append(char c) {
+        if (length == chars.length) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        chars[length++] = c;
+    }
+    
+    public void copyFrom(VoskResult other) {
+        clear();
+        for (int i = 0; i < other.length; i++) append(other.chars[i]);
+        kind = other.kind;
+    }
+    
+    /**
+     * Copies {@code other} from {@code start} to its end.
+     */
+    public void copyFrom(VoskResult other, int start) {
+        clear();
+        for (int i = start; i < other.length; i++) append(other.chars[i]);
+        kind = other.kind;
+    }
+    
+    public boolean isEmpty() {
+        return length == 0;
+    }
+    
+    public boolean contentEquals(CharSequence other) {
+        if (other.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != other.charAt(i)) return false;
+        }
+        return true;
+    }
+    
+    @Override
+    public int length() {
+        return length;
+    }
+    
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        return chars[index];
+    }
+    
+    @Override
+    public @NotNull CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+    
+    @Override
+    public @NotNull String toString() {
+        return new String(chars, 0, length);
+    }
+    
+    public enum Kind {
+        /** The hypothesis so far, from {@code getPartialResult()}. */
+        PARTIAL("\"partial\""),
+        /** A finished utterance, from {@code getResult()} or {@code getFinalResult()}. */
+        FINAL("\"text\"");
+        
+        private final String jsonKey;
+        
+        Kind(String jsonKey) {
+            this.jsonKey = jsonKey;
+        }
+        
+        String jsonKey() {
+            return jsonKey;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
 import org.infinitytwogames.vosklib.VoskManager;
 import org.infinitytwogames.vosklib.Vosklib;
+import org.infinitytwogames.vosklib.audio.CaptureMode;
 import org.infinitytwogames.vosklib.data.Config;
 import org.infinitytwogames.vosklib.data.DataLoader;
 import org.infinitytwogames.vosklib.data.FileDownloader;
@@ -82,6 +83,18 @@ public class ConfigScreen extends Screen {
                 .bounds(16, this.height - 25, 100, 20)
                 .build());
         
+        this.addRenderableWidget(Button.builder(
+                        Component.literal("Capture: " + Config.CAPTURE_MODE.get().getDisplayName()),
+                        b -> {
+                            // Cycle through the modes; a running session switches on its next chunk
+                            CaptureMode newValue = Config.CAPTURE_MODE.get().next();
+                            VoskManager.setCaptureMode(newValue);
+                            
+                            b.setMessage(Component.literal("Capture: " + newValue.getDisplayName()));
+                        })
+                .bounds(120, this.height - 25, 120, 20)
+                .build());
+        
         // Action Buttons
         this.downloadButton = addRenderableWidget(Button.builder(Component.literal("Download"), b -> startDownload())
                 .bounds(this.width - 232, this.height - 25, 100, 20).build());
@@ -0,0 +1,135 @@
+package org.infinitytwogames.vosklib.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PcmRingBufferTest {
+    @Test
+    void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(1024, new PcmRingBuffer(1000).capacity());
+        assertEquals(1024, new PcmRingBuffer(1024).capacity());
+    }
+    
+    @Test
+    void aFullBufferDropsTheWholeChunkAndCountsIt() {
+        PcmRingBuffer ring = new PcmRingBuffer(1024);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        
+        assertTrue(ring.write(new byte[1000], 0, 1000));
+        assertFalse(ring.write(new byte[100], 0, 100));
+        
+        assertEquals(1, ring.getOverruns());
+        assertEquals(100, ring.getDroppedBytes());
+        assertEquals(1000, cursor.available(), "a dropped chunk must not be partly written");
+        assertEquals(24, ring.free());
+    }
+    
+    @Test
+    void readingHandsTheSpaceBack() {
+        PcmRingBuffer ring = new PcmRingBuffer(1024);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        ring.write(new byte[1000], 0, 1000);
+        
+        assertEquals(600, cursor.read(new byte[600], 0, 600));
+        
+        assertTrue(ring.write(new byte[500], 0, 500));
+        assertEquals(0, ring.getOverruns());
+    }
+    
+    @Test
+    void theSlowestCursorHoldsBackTheProducer() {
+        PcmRingBuffer ring = new PcmRingBuffer(1024);
+        PcmRingBuffer.Cursor fast = ring.openCursor();
+        PcmRingBuffer.Cursor slow = ring.openCursor();
+        ring.write(new byte[1000], 0, 1000);
+        fast.read(new byte[1000], 0, 1000);
+        
+        assertFalse(ring.write(new byte[100], 0, 100));
+        assertEquals(1, ring.getOverruns());
+        
+        // Closing the slow consumer releases it
+        slow.close();
+        assertTrue(ring.write(new byte[100], 0, 100));
+        assertEquals(1, ring.getOverruns());
+    }
+    
+    @Test
+    void dataSurvivesWrappingAround() {
+        PcmRingBuffer ring = new PcmRingBuffer(16);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        byte[] out = new byte[10];
+        
+        for (int round = 0; round < 5; round++) {
+            byte[] chunk = new byte[10];
+            for (int i = 0; i < chunk.length; i++) chunk[i] = (byte) (round * 10 + i);
+            
+            assertTrue(ring.write(chunk, 0, chunk.length));
+            assertEquals(10, cursor.read(out, 0, out.length));
+            assertArrayEquals(chunk, out);
+        }
+        assertEquals(0, ring.getOverruns());
+    }
+    
+    @Test
+    void samplesAreEncodedLittleEndian() {
+        PcmRingBuffer ring = new PcmRingBuffer(16);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        ring.write(new short[]{0x1234, -2}, 0, 2);
+        
+        byte[] out = new byte[4];
+        assertEquals(4, cursor.read(out, 0, 4));
+        assertArrayEquals(new byte[]{0x34, 0x12, (byte) 0xFE, (byte) 0xFF}, out);
+    }
+    
+    @Test
+    void reportsEachStampedChunkOnceItsFirstByteIsRead() {
+        PcmRingBuffer ring = new PcmRingBuffer(1024);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        List<Long> picked = new ArrayList<>();
+        
+        ring.write(new byte[100], 0, 100, 1);
+        ring.write(new byte[100], 0, 100); // Not stamped
+        ring.write(new byte[100], 0, 100, 3);
+        
+        cursor.pickUp(picked::add);
+        assertEquals(List.of(), picked);
+        
+        cursor.read(new byte[150], 0, 150);
+        cursor.pickUp(picked::add);
+        assertEquals(List.of(1L), picked);
+        
+        // Reading one byte of the last chunk is enough
+        cursor.read(new byte[51], 0, 51);
+        cursor.pickUp(picked::add);
+        assertEquals(List.of(1L, 3L), picked);
+    }
+    
+    @Test
+    void aDroppedChunkIsNotStamped() {
+        PcmRingBuffer ring = new PcmRingBuffer(128);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        List<Long> picked = new ArrayList<>();
+        
+        assertTrue(ring.write(new byte[100], 0, 100, 1));
+        assertFalse(ring.write(new byte[100], 0, 100, 2));
+        
+        cursor.read(new byte[100], 0, 100);
+        assertTrue(ring.write(new byte[100], 0, 100, 3));
+        cursor.read(new byte[1], 0, 1);
+        cursor.pickUp(picked::add);
+        assertEquals(List.of(1L, 3L), picked);
+    }
+    
+    @Test
+    void aNewCursorOnlySeesAudioWrittenAfterIt() {
+        PcmRingBuffer ring = new PcmRingBuffer(64);
+        ring.openCursor();
+        ring.write(new byte[10], 0, 10);
+        
+        assertEquals(0, ring.openCursor().available());
+    }
+}
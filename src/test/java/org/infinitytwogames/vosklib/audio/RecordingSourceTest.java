@@ -0,0 +1,71 @@
+package org.infinitytwogames.vosklib.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordingSourceTest {
+    private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+    
+    @TempDir
+    Path dir;
+    
+    // Hands out the same pattern forever
+    private static class FakeSource implements AudioSource {
+        @Override
+        public AudioFormat open() {
+            return FORMAT;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int off, int len) {
+            for (int i = 0; i < len; i++) buffer[off + i] = (byte) i;
+            return len;
+        }
+        
+        @Override
+        public void close() {}
+    }
+    
+    @Test
+    void keepsTheTailAndFinishesTheHeaderWhenStoppedByAnInterrupt() throws Exception {
+        Path file = dir.resolve("session.wav");
+        RecordingSource recording = new RecordingSource(new FakeSource(), file);
+        recording.open();
+        
+        byte[] buffer = new byte[4096];
+        for (int i = 0; i < 10; i++) recording.read(buffer, 0, buffer.length);
+        
+        // Stopping the pipeline interrupts the capture thread before it closes the source
+        Thread.currentThread().interrupt();
+        try {
+            recording.close();
+        } finally {
+            assertTrue(Thread.interrupted(), "the interrupt should be left for the capture loop");
+        }
+        
+        assertEquals(PcmFile.WAV_HEADER_SIZE + 40_960, Files.size(file));
+        try (FileChannel channel = FileChannel.open(file)) {
+            PcmFile.Layout layout = PcmFile.readLayout(channel, file);
+            assertEquals(PcmFile.WAV_HEADER_SIZE, layout.offset());
+            assertEquals(40_960, layout.length());
+            assertEquals(16000, layout.sampleRate());
+        }
+        
+        // readLayout() copes with an unfinished header, so check the sizes themselves
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(40_960 + PcmFile.WAV_HEADER_SIZE - 8, header.getInt(4));
+        assertEquals(40_960, header.getInt(40));
+        assertArrayEquals(buffer, Arrays.copyOfRange(data, data.length - buffer.length, data.length));
+    }
+}
@@ -0,0 +1,55 @@
+package org.infinitytwogames.vosklib.audio;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResamplerTest {
+    private static final int OUT_RATE = 16000;
+    private static final double AMPLITUDE = 10000;
+    
+    // Output samples skipped before measuring, so the filter has settled
+    private static final int SETTLE = 4000;
+    
+    @ParameterizedTest
+    @ValueSource(ints = {48000, 44100})
+    void passbandIsFlatBelowSevenKilohertz(int inRate) {
+        for (int hz = 100; hz <= 7000; hz += 100) {
+            double gain = gainDb(inRate, hz);
+            assertTrue(Math.abs(gain) < 0.5, hz + " Hz came through at " + gain + " dB");
+        }
+    }
+    
+    @ParameterizedTest
+    @ValueSource(ints = {48000, 44100})
+    void rejectsEverythingThatWouldAliasAboveEightKilohertz(int inRate) {
+        for (int hz = 8000; hz < inRate / 2; hz += 250) {
+            double gain = gainDb(inRate, hz);
+            assertTrue(gain < -60, hz + " Hz came through at " + gain + " dB");
+        }
+    }
+    
+    // Resamples two seconds of a sine at hz and returns the output level relative to the input
+    private static double gainDb(int inRate, int hz) {
+        int frames = inRate * 2;
+        byte[] in = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            int sample = (int) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * hz * i / inRate));
+            in[i * 2] = (byte) sample;
+            in[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        
+        Resampler resampler = new Resampler(inRate, OUT_RATE, 1, false, frames);
+        byte[] out = new byte[resampler.maxOutputBytes(in.length)];
+        int samples = resampler.process(in, 0, in.length, out, 0) / 2;
+        
+        double sum = 0;
+        for (int i = SETTLE; i < samples; i++) {
+            short sample = (short) ((out[i * 2] & 0xFF) | (out[i * 2 + 1] << 8));
+            sum += sample * (double) sample;
+        }
+        double rms = Math.sqrt(sum / (samples - SETTLE));
+        return 20 * Math.log10(rms / (AMPLITUDE / Math.sqrt(2)));
+    }
+}
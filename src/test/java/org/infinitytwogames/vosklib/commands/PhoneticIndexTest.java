@@ -0,0 +1,77 @@
+package org.infinitytwogames.vosklib.commands;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhoneticIndexTest {
+    private static final double THRESHOLD = 0.8;
+    
+    private static PhoneticIndex<String> index(String... phrases) {
+        PhoneticIndex.Builder<String> builder = new PhoneticIndex.Builder<>();
+        for (String phrase : phrases) builder.add(phrase, phrase);
+        return builder.build();
+    }
+    
+    @Test
+    void findsANearHomophone() {
+        PhoneticIndex.Match<String> match = index("craft", "open inventory").find("graft a pickaxe", THRESHOLD);
+        
+        assertNotNull(match);
+        assertEquals("craft", match.value());
+        assertEquals(0, match.startWord());
+        assertEquals(1, match.endWord());
+    }
+    
+    @Test
+    void matchesAcrossAWordBoundary() {
+        PhoneticIndex.Match<String> match = index("inventory").find("open in ventry", THRESHOLD);
+        
+        assertNotNull(match);
+        assertEquals("inventory", match.value());
+    }
+    
+    @Test
+    void shortKeysAreNeverMatchedBySound() {
+        // "go", "key", "cow" and "queue" all encode to K
+        assertEquals(Metaphone.encode("go"), Metaphone.encode("key"));
+        
+        PhoneticIndex<String> index = index("go");
+        for (String heard : new String[]{"key", "cow", "queue", "go"}) {
+            assertNull(index.find(heard, THRESHOLD), heard);
+        }
+    }
+    
+    @Test
+    void shortWordsDontMatchALongerPhrase() {
+        PhoneticIndex<String> index = index("go home", "craft");
+        
+        assertNull(index.find("key", THRESHOLD));
+        assertNull(index.find("cow", THRESHOLD));
+    }
+    
+    @Test
+    void theHeardWordsMustBeAboutAsLongAsThePhrase() {
+        // "set pie" encodes to STP like "stop", but is spelled nearly twice as long
+        assertEquals(Metaphone.encode("stop"), Metaphone.encode("set") + Metaphone.encode("pie"));
+        PhoneticIndex<String> index = index("stop");
+        
+        assertNotNull(index.find("stoop", THRESHOLD));
+        assertNull(index.find("set pie", THRESHOLD));
+    }
+    
+    @Test
+    void prefersTheHomophoneSpelledLikeWhatWasHeard() {
+        PhoneticIndex.Match<String> match = index("write a book", "right a boat").find("write a book", THRESHOLD);
+        
+        assertNotNull(match);
+        assertEquals("write a book", match.value());
+        assertEquals(1.0, match.score());
+    }
+    
+    @Test
+    void nothingBelowTheThreshold() {
+        assertNull(index("craft").find("sword", THRESHOLD));
+        assertNull(index().find("craft", THRESHOLD));
+    }
+}
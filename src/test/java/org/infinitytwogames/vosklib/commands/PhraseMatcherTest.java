@@ -0,0 +1,59 @@
+package org.infinitytwogames.vosklib.commands;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhraseMatcherTest {
+    private static PhraseMatcher<String> matcher(String... phrases) {
+        PhraseMatcher.Builder<String> builder = new PhraseMatcher.Builder<>();
+        for (String phrase : phrases) builder.add(phrase, phrase);
+        return builder.build();
+    }
+    
+    private static List<String> values(List<PhraseMatcher.Hit<String>> hits) {
+        return hits.stream().map(PhraseMatcher.Hit::value).toList();
+    }
+    
+    @Test
+    void findsEveryPhraseInTheOrderTheyEnd() {
+        PhraseMatcher<String> matcher = matcher("open the door", "craft", "the door");
+        
+        List<PhraseMatcher.Hit<String>> hits = matcher.match("please open the door and craft a pickaxe");
+        
+        assertEquals(List.of("open the door", "the door", "craft"), values(hits));
+        assertEquals(1, hits.get(0).startWord());
+        assertEquals(4, hits.get(0).endWord());
+    }
+    
+    @Test
+    void matchesWholeWordsOnly() {
+        PhraseMatcher<String> matcher = matcher("craft", "go");
+        
+        assertTrue(matcher.match("the aircraft is going").isEmpty());
+        assertEquals(List.of("go"), values(matcher.match("go")));
+    }
+    
+    @Test
+    void ignoresCaseAndPunctuation() {
+        PhraseMatcher<String> matcher = matcher("Open the Door!");
+        
+        assertEquals(List.of("Open the Door!"), values(matcher.match("OK, open, the door.")));
+    }
+    
+    @Test
+    void followsFailureLinksAfterAPartialMatch() {
+        PhraseMatcher<String> matcher = matcher("open the chest", "the door");
+        
+        assertEquals(List.of("the door"), values(matcher.match("open the door")));
+    }
+    
+    @Test
+    void anUnknownWordBreaksAPhrase() {
+        PhraseMatcher<String> matcher = matcher("open the door");
+        
+        assertTrue(matcher.match("open the big door").isEmpty());
+    }
+}
@@ -0,0 +1,259 @@
+package org.infinitytwogames.vosklib.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataLoaderTest {
+    private static final int CHUNK = 32 * 1024;
+    
+    @TempDir
+    Path dir;
+    
+    private HttpServer server;
+    private final Map<String, byte[]> files = new TreeMap<>();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicInteger gets = new AtomicInteger();
+    private volatile int failures = 0;
+    private volatile int goneAfter = Integer.MAX_VALUE;
+    private byte[] modelZip;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        Random random = new Random(1);
+        for (String name : new String[]{"am/final.mdl", "conf/model.conf", "graph/HCLr.fst"}) {
+            byte[] content = new byte[200_000 + random.nextInt(1000)];
+            random.nextBytes(content);
+            files.put(name, content);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("vosk-model-test/"));
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry("vosk-model-test/" + file.getKey()));
+                zip.write(file.getValue());
+                zip.closeEntry();
+            }
+        }
+        modelZip = bytes.toByteArray();
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        
+        DataLoader.downloadedBytes.set(0);
+        DataLoader.totalSize.set(0);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+    
+    // Serves body like a file host that resumes. The first `failures` GETs stop halfway, and any after `goneAfter` get 404
+    private String serve(String path, byte[] body) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                
+                int request = gets.incrementAndGet();
+                if (request > goneAfter) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                int from = 0;
+                if (range != null) {
+                    ranges.add(range);
+                    from = Integer.parseInt(range.substring("bytes=".length()).split("-")[0]);
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + (body.length - 1) + "/" + body.length);
+                }
+                send(exchange, range == null ? 200 : 206, body, from, request <= failures ? from + (body.length - from) / 2 : body.length);
+            }
+        });
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+    
+    // Announces the body from `from` on but stops at `end`, sending a little at a time
+    private static void send(HttpExchange exchange, int status, byte[] body, int from, int end) {
+        try {
+            exchange.sendResponseHeaders(status, body.length - from);
+            OutputStream out = exchange.getResponseBody();
+            for (int off = from; off < end; off += CHUNK) {
+                out.write(body, off, Math.min(CHUNK, end - off));
+                out.flush();
+                LockSupport.parkNanos(2_000_000);
+            }
+        } catch (IOException ignored) {
+            // Closing a short body fails on purpose
+        }
+    }
+    
+    @Test
+    void installFlattensTheTopLevelDirectoryAndReplacesTheOldModel() throws Exception {
+        Path model = dir.resolve("small-en");
+        Files.createDirectories(model);
+        Files.writeString(model.resolve("stale.txt"), "old");
+        
+        DataLoader.install(serve("/model.zip", modelZip), model);
+        
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getValue(), Files.readAllBytes(model.resolve(file.getKey())), file.getKey());
+        }
+        assertFalse(Files.exists(model.resolve("vosk-model-test")));
+        assertFalse(Files.exists(model.resolve("stale.txt")));
+        assertFalse(Files.exists(dir.resolve("small-en.partial")));
+    }
+    
+    @Test
+    void reportsProgressAsTheBodyArrives() throws Exception {
+        List<Long> seen = new ArrayList<>();
+        Thread poller = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                seen.add(DataLoader.downloadedBytes.get());
+                LockSupport.parkNanos(1_000_000);
+            }
+        });
+        poller.start();
+        
+        try {
+            DataLoader.install(serve("/model.zip", modelZip), dir.resolve("small-en"));
+        } finally {
+            poller.interrupt();
+            poller.join();
+        }
+        
+        assertEquals(modelZip.length, DataLoader.totalSize.get());
+        assertEquals(modelZip.length, DataLoader.downloadedBytes.get());
+        assertTrue(seen.stream().anyMatch(bytes -> bytes > 0 && bytes < modelZip.length), "no progress while downloading");
+        for (int i = 1; i < seen.size(); i++) assertTrue(seen.get(i) >= seen.get(i - 1), "progress went backwards");
+    }
+    
+    private void assertInstalled(Path model) throws IOException {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getValue(), Files.readAllBytes(model.resolve(file.getKey())), file.getKey());
+        }
+        assertFalse(Files.exists(dir.resolve("small-en.partial")));
+        assertFalse(Files.exists(dir.resolve("model.zip")));
+        assertFalse(Files.exists(dir.resolve("model.zip.part")));
+        assertFalse(Files.exists(dir.resolve("model.zip.part.json")));
+        assertEquals(modelZip.length, DataLoader.downloadedBytes.get());
+        assertEquals(modelZip.length, DataLoader.totalSize.get());
+    }
+    
+    @Test
+    void fallsBackToADownloadWhenTheStreamBreaks() throws Exception {
+        Path model = dir.resolve("small-en");
+        failures = 1;
+        
+        DataLoader.install(serve("/model.zip", modelZip), model);
+        
+        assertInstalled(model);
+        assertEquals(2, gets.get());
+        assertTrue(ranges.isEmpty());
+    }
+    
+    @Test
+    void theFallbackContinuesFromWhereItsConnectionDropped() throws Exception {
+        Path model = dir.resolve("small-en");
+        failures = 2;
+        
+        DataLoader.install(serve("/model.zip", modelZip), model);
+        
+        assertInstalled(model);
+        assertEquals(1, ranges.size());
+        long resumedFrom = Long.parseLong(ranges.get(0).substring("bytes=".length()).split("-")[0]);
+        assertTrue(resumedFrom > 0 && resumedFrom <= modelZip.length / 2, "resumed from " + resumedFrom);
+    }
+    
+    @Test
+    void aBodyThatNeverArrivesLeavesNoStagingBehind() throws IOException {
+        Path model = dir.resolve("small-en");
+        Files.createDirectories(model);
+        Files.writeString(model.resolve("installed.txt"), "keep");
+        failures = 2;
+        goneAfter = 2;
+        
+        assertThrows(RuntimeException.class, () -> DataLoader.install(serve("/model.zip", modelZip), model));
+        
+        assertFalse(Files.exists(dir.resolve("small-en.partial")));
+        assertEquals("keep", Files.readString(model.resolve("installed.txt")));
+        assertTrue(Files.exists(dir.resolve("model.zip.part.json")), "what did arrive should be kept for next time");
+    }
+    
+    @Test
+    void aLaterInstallContinuesFromTheSidecarInsteadOfStreaming() throws Exception {
+        Path model = dir.resolve("small-en");
+        failures = 2;
+        goneAfter = 2;
+        String url = serve("/model.zip", modelZip);
+        assertThrows(RuntimeException.class, () -> DataLoader.install(url, model));
+        
+        JsonArray segment = JsonParser.parseString(Files.readString(dir.resolve("model.zip.part.json")))
+                .getAsJsonObject().getAsJsonArray("segments").get(0).getAsJsonArray();
+        long next = segment.get(1).getAsLong();
+        assertTrue(next > 0);
+        
+        // As after a restart
+        failures = 0;
+        goneAfter = Integer.MAX_VALUE;
+        gets.set(0);
+        DataLoader.downloadedBytes.set(0);
+        DataLoader.totalSize.set(0);
+        DataLoader.install(url, model);
+        
+        assertInstalled(model);
+        assertEquals(List.of("bytes=" + next + "-" + (modelZip.length - 1)), ranges);
+        assertEquals(1, gets.get());
+    }
+    
+    @Test
+    void rejectsEntriesOutsideTheModelFolder() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("vosk-model-test/am/final.mdl"));
+            zip.write(1);
+            zip.putNextEntry(new ZipEntry("vosk-model-test/../escape.txt"));
+            zip.write(1);
+        }
+        Path models = Files.createDirectories(dir.resolve("models"));
+        
+        assertThrows(ZipException.class, () -> DataLoader.install(serve("/evil.zip", bytes.toByteArray()), models.resolve("evil")));
+        
+        assertFalse(Files.exists(models.resolve("escape.txt")));
+        assertFalse(Files.exists(models.resolve("evil.partial")));
+        assertFalse(Files.exists(models.resolve("evil")));
+    }
+}
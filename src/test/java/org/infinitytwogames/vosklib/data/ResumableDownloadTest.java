@@ -0,0 +1,245 @@
+package org.infinitytwogames.vosklib.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumableDownloadTest {
+    private static final int SIZE = 32 * 1024 * 1024 + 12345;
+    private static final int CHUNK = 16 * 1024;
+    
+    @TempDir
+    Path dir;
+    
+    private byte[] body = new byte[SIZE];
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    // Per test: the file's ETag, whether Range is honoured, where the first response covering it stops, and a range start answered with 404
+    private volatile String etag = "\"v1\"";
+    private volatile boolean honourRanges = true;
+    private volatile long cutAt = -1;
+    private volatile long missingFrom = -1;
+    private volatile long missingDelayNanos = 0;
+    private final AtomicBoolean cut = new AtomicBoolean();
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(3).nextBytes(body);
+        
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/model.zip", this::handle);
+        server.start();
+        
+        DataLoader.downloadedBytes.set(0);
+        DataLoader.totalSize.set(0);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int from = 0;
+            int to = SIZE - 1;
+            int status = 200;
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            if (range != null) ranges.add(range);
+            exchange.getResponseHeaders().add("ETag", etag);
+            
+            // A range of a file that changed since would mix two versions, so If-Range asks for all of it instead
+            if (range != null && honourRanges && (ifRange == null || ifRange.equals(etag))) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                from = Integer.parseInt(bounds[0]);
+                if (bounds.length > 1) to = Integer.parseInt(bounds[1]);
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + SIZE);
+                
+                if (from == missingFrom) {
+                    LockSupport.parkNanos(missingDelayNanos);
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+            }
+            
+            int end = to + 1;
+            boolean cutThis = cutAt > from && cutAt < end && cut.compareAndSet(false, true);
+            if (cutThis) end = (int) cutAt;
+            
+            exchange.sendResponseHeaders(status, to - from + 1);
+            OutputStream out = exchange.getResponseBody();
+            byte[] body = this.body;
+            for (int off = from; off < end; off += CHUNK) {
+                out.write(body, off, Math.min(CHUNK, end - off));
+            }
+        } catch (IOException ignored) {
+            // The client hung up, or the body was cut short on purpose
+        }
+    }
+    
+    private FileDownloader.DownloadTask task() {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/model.zip";
+        return new FileDownloader.DownloadTask(url, dir.resolve("model.zip"), SIZE, false, null, true, "\"v1\"");
+    }
+    
+    private void assertDownloaded(FileDownloader.DownloadTask task) throws IOException {
+        assertArrayEquals(body, Files.readAllBytes(task.target()));
+        assertFalse(Files.exists(dir.resolve("model.zip.part")));
+        assertFalse(Files.exists(dir.resolve("model.zip.part.json")));
+        assertEquals(SIZE, DataLoader.downloadedBytes.get());
+    }
+    
+    @Test
+    void fetchesEachRangeOnItsOwnConnection() throws Exception {
+        FileDownloader.DownloadTask task = task();
+        
+        new ResumableDownload(http, task, 3).run(4);
+        
+        assertDownloaded(task);
+        assertEquals(4, ranges.size());
+        assertEquals(4, ranges.stream().distinct().count());
+    }
+    
+    @Test
+    void startsOverOnOneConnectionWhenTheServerIgnoresRange() throws Exception {
+        honourRanges = false;
+        FileDownloader.DownloadTask task = task();
+        
+        new ResumableDownload(http, task, 3).run(4);
+        
+        assertDownloaded(task);
+    }
+    
+    @Test
+    void continuesASegmentFromWhereItsConnectionDropped() throws Exception {
+        long segment = (SIZE + 3) / 4;
+        cutAt = segment + segment / 2;
+        FileDownloader.DownloadTask task = task();
+        
+        new ResumableDownload(http, task, 3).run(4);
+        
+        assertDownloaded(task);
+        assertEquals(5, ranges.size());
+        long resumedFrom = Long.parseLong(ranges.get(4).substring("bytes=".length()).split("-")[0]);
+        assertTrue(resumedFrom > segment && resumedFrom <= cutAt, "resumed from " + resumedFrom);
+    }
+    
+    // Leaves a download that stopped part way, as the game would after losing the connection for good
+    private JsonArray interrupt(FileDownloader.DownloadTask task) throws IOException {
+        missingFrom = 0;
+        missingDelayNanos = 20_000_000;
+        assertThrows(RuntimeException.class, () -> new ResumableDownload(http, task, 3).run(4));
+        
+        missingFrom = -1;
+        ranges.clear();
+        DataLoader.downloadedBytes.set(0);
+        return JsonParser.parseString(Files.readString(dir.resolve("model.zip.part.json"))).getAsJsonObject().getAsJsonArray("segments");
+    }
+    
+    @Test
+    void resumesEachRangeFromWhereTheSidecarLeftIt() throws Exception {
+        FileDownloader.DownloadTask task = task();
+        JsonArray segments = interrupt(task);
+        
+        new ResumableDownload(http, task, 3).run(4);
+        
+        assertDownloaded(task);
+        Set<String> expected = new HashSet<>();
+        for (JsonElement element : segments) {
+            JsonArray range = element.getAsJsonArray();
+            long next = range.get(1).getAsLong();
+            long end = range.get(2).getAsLong();
+            if (next <= end) expected.add("bytes=" + next + "-" + end);
+        }
+        assertEquals(expected, new HashSet<>(ranges));
+    }
+    
+    @Test
+    void startsOverCleanlyWhenTheFileChangedSinceTheLastAttempt() throws Exception {
+        FileDownloader.DownloadTask task = task();
+        interrupt(task);
+        
+        // Same size, so only If-Range can tell
+        byte[] changed = new byte[SIZE];
+        new Random(4).nextBytes(changed);
+        body = changed;
+        etag = "\"v2\"";
+        
+        new ResumableDownload(http, task, 3).run(4);
+        
+        assertDownloaded(task);
+        assertFalse(ranges.isEmpty(), "the resumed ranges were never asked for");
+    }
+    
+    @Test
+    void startsOverWhenTheServerStopsHonouringRangeBetweenAttempts() throws Exception {
+        FileDownloader.DownloadTask task = task();
+        interrupt(task);
+        honourRanges = false;
+        
+        new ResumableDownload(http, task, 3).run(4);
+        
+        assertDownloaded(task);
+    }
+    
+    // Repeated because it is about timing: the others must be stopped mid-write without losing the file
+    @RepeatedTest(5)
+    void aFailingSegmentStopsTheOthersButKeepsTheirProgress() throws IOException {
+        missingFrom = 0;
+        missingDelayNanos = 20_000_000; // The others are busy writing when it fails
+        FileDownloader.DownloadTask task = task();
+        
+        long start = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> new ResumableDownload(http, task, 3).run(4));
+        assertTrue(System.nanoTime() - start < 2_000_000_000L, "the other segments weren't stopped");
+        
+        // The sidecar could still be written, so the next attempt keeps what arrived
+        long kept = 0;
+        JsonElement state = JsonParser.parseString(Files.readString(dir.resolve("model.zip.part.json")));
+        for (JsonElement range : state.getAsJsonObject().getAsJsonArray("segments")) {
+            kept += range.getAsJsonArray().get(1).getAsLong() - range.getAsJsonArray().get(0).getAsLong();
+        }
+        assertTrue(kept > 0);
+        assertEquals(kept, DataLoader.downloadedBytes.get());
+        
+        byte[] part = Files.readAllBytes(dir.resolve("model.zip.part"));
+        for (JsonElement range : state.getAsJsonObject().getAsJsonArray("segments")) {
+            int from = range.getAsJsonArray().get(0).getAsInt();
+            int next = range.getAsJsonArray().get(1).getAsInt();
+            for (int i = from; i < next; i++) assertEquals(body[i], part[i]);
+        }
+    }
+}
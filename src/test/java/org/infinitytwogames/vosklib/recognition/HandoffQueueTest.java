@@ -0,0 +1,76 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandoffQueueTest {
+    @Test
+    void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(64, new HandoffQueue<>(64).capacity());
+        assertEquals(128, new HandoffQueue<>(65).capacity());
+        assertEquals(2, new HandoffQueue<>(0).capacity());
+    }
+    
+    @Test
+    void keepsOrderAndRefusesWhenFull() {
+        HandoffQueue<Integer> queue = new HandoffQueue<>(4);
+        for (int i = 0; i < 4; i++) assertTrue(queue.offer(i));
+        
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        
+        for (int i = 0; i < 4; i++) assertEquals(i, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+    
+    @Test
+    void reusesSlotsAcrossManyLaps() {
+        HandoffQueue<Integer> queue = new HandoffQueue<>(4);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(queue.offer(i));
+            assertEquals(i, queue.poll());
+        }
+    }
+    
+    @Test
+    void concurrentProducersDeliverEveryItemOnce() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20_000;
+        HandoffQueue<Integer> queue = new HandoffQueue<>(64);
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while (!queue.offer(i)) Thread.yield();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        
+        BitSet seen = new BitSet();
+        int received = 0;
+        while (received < producers * perProducer) {
+            Integer item = queue.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            assertFalse(seen.get(item), "delivered twice: " + item);
+            seen.set(item);
+            received++;
+        }
+        for (Thread thread : threads) thread.join();
+        
+        assertEquals(producers * perProducer, seen.cardinality());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,101 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MainThreadHandoffTest {
+    private static Runnable add(List<Integer> delivered, int value) {
+        return () -> delivered.add(value);
+    }
+    
+    @Test
+    void dropPartialsKeepsEveryFinalInOrder() {
+        MainThreadHandoff handoff = new MainThreadHandoff(4);
+        List<Integer> delivered = new ArrayList<>();
+        
+        for (int i = 0; i < 10; i++) handoff.submit(add(delivered, i), MainThreadHandoff.OverflowPolicy.DROP_PARTIALS, () -> true);
+        
+        assertEquals(10, handoff.getDepth());
+        assertEquals(6, handoff.getOverflowed());
+        assertEquals(0, handoff.getStalls());
+        
+        assertEquals(10, handoff.drain());
+        assertEquals(IntStream.range(0, 10).boxed().toList(), delivered);
+        assertEquals(0, handoff.getDepth());
+    }
+    
+    @Test
+    void finalsFollowTheOverflowUntilItIsDrained() {
+        MainThreadHandoff handoff = new MainThreadHandoff(2);
+        List<Integer> delivered = new ArrayList<>();
+        for (int i = 0; i < 3; i++) handoff.submit(add(delivered, i), MainThreadHandoff.OverflowPolicy.DROP_PARTIALS, () -> true);
+        
+        // The queue has room again, but 2 is still waiting in the overflow list
+        handoff.drain();
+        handoff.submit(add(delivered, 3), MainThreadHandoff.OverflowPolicy.DROP_PARTIALS, () -> true);
+        handoff.drain();
+        
+        assertEquals(List.of(0, 1, 2, 3), delivered);
+    }
+    
+    @Test
+    void blockKeepsTheFinalWhenRecognitionStops() {
+        MainThreadHandoff handoff = new MainThreadHandoff(2);
+        List<Integer> delivered = new ArrayList<>();
+        handoff.submit(add(delivered, 0), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+        handoff.submit(add(delivered, 1), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+        
+        handoff.submit(add(delivered, 2), MainThreadHandoff.OverflowPolicy.BLOCK, () -> false);
+        
+        assertEquals(1, handoff.getStalls());
+        assertEquals(1, handoff.getOverflowed());
+        handoff.drain();
+        assertEquals(List.of(0, 1, 2), delivered);
+    }
+    
+    @Test
+    void blockWaitsForTheClientThread() throws InterruptedException {
+        MainThreadHandoff handoff = new MainThreadHandoff(2);
+        List<Integer> delivered = new ArrayList<>();
+        handoff.submit(add(delivered, 0), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+        handoff.submit(add(delivered, 1), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+        
+        AtomicBoolean submitted = new AtomicBoolean();
+        Thread decode = new Thread(() -> {
+            handoff.submit(add(delivered, 2), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+            submitted.set(true);
+        });
+        decode.start();
+        
+        Thread.sleep(50);
+        assertFalse(submitted.get());
+        
+        handoff.drain();
+        decode.join(5000);
+        assertTrue(submitted.get());
+        handoff.drain();
+        
+        assertEquals(List.of(0, 1, 2), delivered);
+        assertEquals(1, handoff.getStalls());
+        assertEquals(0, handoff.getOverflowed());
+    }
+    
+    @Test
+    void aFailingTaskDoesntStopTheRest() {
+        MainThreadHandoff handoff = new MainThreadHandoff(4);
+        List<Integer> delivered = new ArrayList<>();
+        handoff.submit(() -> {
+            throw new IllegalStateException("listener failed");
+        }, MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+        handoff.submit(add(delivered, 1), MainThreadHandoff.OverflowPolicy.BLOCK, () -> true);
+        
+        assertEquals(2, handoff.drain());
+        assertEquals(List.of(1), delivered);
+    }
+}
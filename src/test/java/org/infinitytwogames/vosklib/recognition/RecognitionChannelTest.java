@@ -0,0 +1,83 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.infinitytwogames.vosklib.audio.PcmRingBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.vosk.Recognizer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class RecognitionChannelTest {
+    private static final int RATE = 16000;
+    private static final int CHUNK = RATE / 10 * 2; // 100 ms
+    private static final String YES_NO = RecognizerCache.normalize(new String[]{"yes", "no"});
+    
+    private final RecognizerCache cache = new RecognizerCache(RATE, 4, Long.MAX_VALUE);
+    private final RecognitionChannel channel = new RecognitionChannel(RecognitionChannel.DEFAULT_ID, RATE, cache,
+            new RecognitionListeners(), (c, result) -> {});
+    private final Recognizer dictation = mock(Recognizer.class);
+    private final Recognizer grammar = mock(Recognizer.class);
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        for (Recognizer recognizer : new Recognizer[]{dictation, grammar}) {
+            when(recognizer.getPartialResult()).thenReturn("{\"partial\" : \"\"}");
+            when(recognizer.getFinalResult()).thenReturn("{\"text\" : \"yes\"}");
+        }
+        
+        // Both come from the cache, so nothing needs a real model
+        cache.release(RecognizerCache.NO_GRAMMAR, dictation);
+        cache.release(YES_NO, grammar);
+        channel.switchNow(null, RecognizerCache.NO_GRAMMAR, recognizer -> false);
+        channel.getVoiceActivityDetector().configure(true, -45.0, 0.25, 100, 100);
+    }
+    
+    private static byte[] speech() {
+        byte[] chunk = new byte[CHUNK];
+        for (int i = 0; i < CHUNK / 2; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * i / RATE) * 10_000);
+            chunk[2 * i] = (byte) sample;
+            chunk[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return chunk;
+    }
+    
+    // Runs the decode loop over the given chunks on this thread
+    private void decode(byte[]... chunks) {
+        PcmRingBuffer ring = new PcmRingBuffer(1 << 16);
+        PcmRingBuffer.Cursor cursor = ring.openCursor();
+        for (byte[] chunk : chunks) ring.write(chunk, 0, chunk.length);
+        channel.decodeLoop(cursor, () -> CHUNK, CHUNK, () -> cursor.available() > 0);
+    }
+    
+    @Test
+    void preparedOutsideASessionIsInstalledRightAway() {
+        channel.prepare(null, YES_NO, recognizer -> false, Runnable::run);
+        
+        assertSame(grammar, channel.getRecognizer());
+    }
+    
+    @Test
+    void waitsForTheEndOfSpeechEvenBeforeTheFirstPartial() {
+        // The grammar change arrives once speech has started, but before the recognizer said anything
+        AtomicBoolean requested = new AtomicBoolean();
+        when(dictation.acceptWaveForm(any(byte[].class), anyInt())).thenAnswer(invocation -> {
+            if (requested.compareAndSet(false, true)) channel.prepare(null, YES_NO, recognizer -> false, Runnable::run);
+            return false;
+        });
+        
+        channel.beginSession();
+        decode(speech(), speech(), new byte[CHUNK], new byte[CHUNK]);
+        
+        // Onset, more speech, and the silent chunk that ends it all went to the recognizer that heard the start
+        verify(dictation, times(3)).acceptWaveForm(any(byte[].class), anyInt());
+        verify(dictation).getFinalResult();
+        verify(grammar, never()).acceptWaveForm(any(byte[].class), anyInt());
+        assertSame(grammar, channel.getRecognizer());
+    }
+}
@@ -0,0 +1,120 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.junit.jupiter.api.Test;
+import org.vosk.Recognizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RecognizerCacheTest {
+    private static final String YES_NO = RecognizerCache.normalize(new String[]{"yes", "no"});
+    private static final String LEFT_RIGHT = RecognizerCache.normalize(new String[]{"left", "right"});
+    private static final String UP_DOWN = RecognizerCache.normalize(new String[]{"up", "down"});
+    
+    @Test
+    void normalizeIgnoresOrderCaseAndDuplicates() {
+        assertEquals(YES_NO, RecognizerCache.normalize(new String[]{" No", "YES", "no", ""}));
+        assertEquals(RecognizerCache.NO_GRAMMAR, RecognizerCache.normalize(new String[]{" ", null}));
+        assertEquals(RecognizerCache.NO_GRAMMAR, RecognizerCache.normalize(null));
+    }
+    
+    @Test
+    void releasingTheSameRecognizerTwiceCountsItOnce() {
+        RecognizerCache cache = new RecognizerCache(16000, 4, Long.MAX_VALUE);
+        Recognizer recognizer = mock(Recognizer.class);
+        
+        cache.release(YES_NO, recognizer);
+        cache.release(YES_NO, recognizer);
+        
+        assertEquals(1, cache.size());
+        assertEquals(RecognizerCache.estimateBytes(YES_NO), cache.getEstimatedBytes());
+        verify(recognizer, never()).close();
+    }
+    
+    @Test
+    void replacingAnEntryClosesTheOldRecognizerWithoutRecountingIt() {
+        RecognizerCache cache = new RecognizerCache(16000, 4, Long.MAX_VALUE);
+        Recognizer first = mock(Recognizer.class);
+        Recognizer second = mock(Recognizer.class);
+        
+        cache.release(YES_NO, first);
+        cache.release(YES_NO, second);
+        
+        verify(first).close();
+        verify(second, never()).close();
+        assertEquals(RecognizerCache.estimateBytes(YES_NO), cache.getEstimatedBytes());
+    }
+    
+    @Test
+    void evictsTheLeastRecentlyUsedOverTheEntryLimit() throws Exception {
+        RecognizerCache cache = new RecognizerCache(16000, 2, Long.MAX_VALUE);
+        Recognizer yesNo = mock(Recognizer.class);
+        Recognizer leftRight = mock(Recognizer.class);
+        Recognizer upDown = mock(Recognizer.class);
+        
+        cache.release(YES_NO, yesNo);
+        cache.release(LEFT_RIGHT, leftRight);
+        
+        // Using yes/no again makes left/right the eldest
+        assertSame(yesNo, cache.acquire(null, YES_NO));
+        cache.release(YES_NO, yesNo);
+        cache.release(UP_DOWN, upDown);
+        
+        assertFalse(cache.contains(LEFT_RIGHT));
+        assertTrue(cache.contains(YES_NO));
+        assertTrue(cache.contains(UP_DOWN));
+        verify(leftRight).close();
+        assertEquals(1, cache.getEvictions());
+        assertEquals(RecognizerCache.estimateBytes(YES_NO) + RecognizerCache.estimateBytes(UP_DOWN), cache.getEstimatedBytes());
+    }
+    
+    @Test
+    void evictsOverTheByteBudget() {
+        long budget = RecognizerCache.estimateBytes(YES_NO) + RecognizerCache.estimateBytes(LEFT_RIGHT);
+        RecognizerCache cache = new RecognizerCache(16000, 10, budget);
+        Recognizer yesNo = mock(Recognizer.class);
+        
+        cache.release(YES_NO, yesNo);
+        cache.release(LEFT_RIGHT, mock(Recognizer.class));
+        assertEquals(2, cache.size());
+        
+        cache.release(RecognizerCache.NO_GRAMMAR, mock(Recognizer.class));
+        
+        assertTrue(cache.getEstimatedBytes() <= budget);
+        assertFalse(cache.contains(YES_NO));
+        verify(yesNo).close();
+    }
+    
+    @Test
+    void acquireTakesTheEntryOutAndCountsAHit() throws Exception {
+        RecognizerCache cache = new RecognizerCache(16000, 4, Long.MAX_VALUE);
+        Recognizer recognizer = mock(Recognizer.class);
+        cache.release(YES_NO, recognizer);
+        
+        assertSame(recognizer, cache.acquire(null, YES_NO));
+        
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        verify(recognizer).reset();
+    }
+    
+    @Test
+    void shrinkingTheLimitsAndClearingCloseEverythingDropped() {
+        RecognizerCache cache = new RecognizerCache(16000, 4, Long.MAX_VALUE);
+        Recognizer yesNo = mock(Recognizer.class);
+        Recognizer leftRight = mock(Recognizer.class);
+        cache.release(YES_NO, yesNo);
+        cache.release(LEFT_RIGHT, leftRight);
+        
+        cache.setLimits(1, Long.MAX_VALUE);
+        verify(yesNo).close();
+        assertEquals(RecognizerCache.estimateBytes(LEFT_RIGHT), cache.getEstimatedBytes());
+        
+        cache.clear();
+        verify(leftRight).close();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+}
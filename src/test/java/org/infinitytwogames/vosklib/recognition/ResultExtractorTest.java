@@ -0,0 +1,54 @@
+package org.infinitytwogames.vosklib.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultExtractorTest {
+    private static String extract(String json, VoskResult.Kind kind) {
+        VoskResult into = new VoskResult(kind);
+        return ResultExtractor.extract(json, into) ? into.toString() : null;
+    }
+    
+    @Test
+    void readsPartialAndFinalText() {
+        assertEquals("open the", extract("{\n  \"partial\" : \"open the\"\n}", VoskResult.Kind.PARTIAL));
+        assertEquals("open the door", extract("{\n  \"text\" : \"open the door\"\n}", VoskResult.Kind.FINAL));
+        assertEquals("", extract("{\"text\" : \"\"}", VoskResult.Kind.FINAL));
+    }
+    
+    @Test
+    void skipsTheWordTextInAWordList() {
+        String json = """
+                {
+                  "result" : [{
+                      "conf" : 1.000000,
+                      "end" : 0.450000,
+                      "start" : 0.210000,
+                      "word" : "text"
+                    }, {
+                      "conf" : 0.982144,
+                      "end" : 0.570000,
+                      "start" : 0.450000,
+                      "word" : "mom"
+                    }],
+                  "text" : "text mom"
+                }""";
+        
+        assertEquals("text mom", extract(json, VoskResult.Kind.FINAL));
+    }
+    
+    @Test
+    void decodesEscapes() {
+        assertEquals("say \"hi\"\n\u00e9", extract("{\"text\" : \"say \\\"hi\\\"\\n\\u00e9\"}", VoskResult.Kind.FINAL));
+    }
+    
+    @Test
+    void rejectsMissingOrMalformedFields() {
+        assertNull(extract(null, VoskResult.Kind.FINAL));
+        assertNull(extract("{\"partial\" : \"open\"}", VoskResult.Kind.FINAL));
+        assertNull(extract("{\"text\" : \"unterminated}", VoskResult.Kind.FINAL));
+        assertNull(extract("{\"text\" : \"bad \\u12\"}", VoskResult.Kind.FINAL));
+        assertNull(extract("{\"text\" : 5}", VoskResult.Kind.FINAL));
+    }
+}